@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.sat;
+
+import java.io.IOException;
+import java.lang.module.ModuleId;
+import java.lang.module.ModuleInfo;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.openjdk.jigsaw.Catalog;
+
+/**
+ * A catalog that caches the module info read from another catalog.
+ * <p>
+ * The module info of the most recently read module ids are retained, up to
+ * a maximum number of module ids. The module info of the other catalog and
+ * its parents is read, and cached, as if local to this catalog, whose parent
+ * is that of the other catalog. The catalog is thread-safe if the other
+ * catalog is.
+ * <p>
+ * Cached module info is not read again until the catalog is refreshed, by
+ * {@link #refresh()}, and the stamp of the other catalog shows that the
+ * module has since been removed, or installed again. A resolver refreshes
+ * its caching catalog once per resolve.
+ *
+ * @see CatalogStamp
+ */
+public class CachingCatalog extends Catalog {
+
+    /**
+     * The default maximum number of module ids whose module info is cached.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+
+    private final Catalog c;
+
+    private final LruCache<ModuleId, ModuleInfo> cache;
+
+    // The stamp of the catalog when last refreshed, otherwise null
+    private CatalogStamp stamp;
+
+    /**
+     *
+     * @param c the catalog whose module info is cached.
+     */
+    public CachingCatalog(Catalog c) {
+        this(c, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     *
+     * @param c the catalog whose module info is cached.
+     * @param cacheSize the maximum number of module ids whose module info
+     * is cached, the least recently read are evicted.
+     * @throws IllegalArgumentException if {@code cacheSize} is less than 1.
+     */
+    public CachingCatalog(Catalog c, int cacheSize) {
+        this.c = c;
+        this.cache = new LruCache<>(cacheSize);
+    }
+
+    /**
+     * Cache the module info of a catalog, unless already cached.
+     */
+    static CachingCatalog of(Catalog c) {
+        return (c instanceof CachingCatalog)
+                ? (CachingCatalog) c
+                : new CachingCatalog(c);
+    }
+
+    /**
+     * @return the catalog whose module info is cached.
+     */
+    public Catalog catalog() {
+        return c;
+    }
+
+    /**
+     * @return the number of reads of module info that were cached.
+     */
+    public long getHitCount() {
+        return cache.hits();
+    }
+
+    /**
+     * @return the number of reads of module info that were not cached.
+     */
+    public long getMissCount() {
+        return cache.misses();
+    }
+
+    /**
+     * @return the ratio of reads of module info that were cached to all
+     * reads, or {@code 0} if there have been no reads.
+     */
+    public double getHitRate() {
+        long hits = cache.hits();
+        long total = hits + cache.misses();
+        return (total == 0) ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Remove all cached module info.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Refresh the cached module info, removing that of modules that have
+     * been removed from, or installed again in, the catalog since last
+     * refreshed. Module info cached before first refreshed is assumed to
+     * be current.
+     *
+     * @throws IOException if there is an error using the catalog.
+     */
+    public void refresh() throws IOException {
+        refresh(CatalogStamp.of(c, CatalogStamp.directory(c)));
+    }
+
+    /**
+     * Refresh the cached module info from a stamp of the catalog already
+     * obtained.
+     */
+    synchronized void refresh(CatalogStamp stamp) {
+        CatalogStamp previous = this.stamp;
+        this.stamp = stamp;
+        if (previous == null || previous.fingerprint == stamp.fingerprint) {
+            return;
+        }
+
+        Set<ModuleId> present = new HashSet<>(stamp.listing);
+        for (ModuleId mid : previous.listing) {
+            if (!present.contains(mid) || previous.modified(mid) != stamp.modified(mid)) {
+                cache.remove(mid);
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return c.name();
+    }
+
+    @Override
+    public Catalog parent() {
+        return c.parent();
+    }
+
+    @Override
+    protected void gatherLocalModuleIds(String moduleName, Set<ModuleId> mids) throws IOException {
+        mids.addAll(c.findLocalModuleIds(moduleName));
+    }
+
+    @Override
+    protected void gatherLocalDeclaringModuleIds(Set<ModuleId> mids) throws IOException {
+        mids.addAll(c.listLocalDeclaringModuleIds());
+    }
+
+    @Override
+    public List<ModuleId> findModuleIds(String moduleName) throws IOException {
+        return c.findModuleIds(moduleName);
+    }
+
+    @Override
+    public List<ModuleId> listDeclaringModuleIds() throws IOException {
+        return c.listDeclaringModuleIds();
+    }
+
+    @Override
+    protected byte[] readLocalModuleInfoBytes(ModuleId mid) throws IOException {
+        return c.readModuleInfoBytes(mid);
+    }
+
+    @Override
+    public ModuleInfo readLocalModuleInfo(ModuleId mid) throws IOException {
+        return readModuleInfo(mid);
+    }
+
+    @Override
+    public ModuleInfo readModuleInfo(ModuleId mid) throws IOException {
+        ModuleInfo mi = cache.get(mid);
+        if (mi == null) {
+            mi = c.readModuleInfo(mid);
+            if (mi != null) {
+                cache.put(mid, mi);
+            }
+        }
+        return mi;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.sat;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.module.ModuleId;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jigsaw.Catalog;
+import org.openjdk.jigsaw.Library;
+
+/**
+ * A stamp of the modules present in a catalog, that is cheap to obtain and
+ * decides whether an index of the catalog is current without reading module
+ * info.
+ * <p>
+ * The stamp consists of the module ids in the catalog and, if the catalog
+ * is a library located in a directory, the modification time of the
+ * directory of each module name in the library directory. Installing a
+ * module, or removing a module and installing it again under the same
+ * module id, modifies the directory of its module name. Otherwise the
+ * modification time of a module is 0, and a module installed again under
+ * the same module id is not detected.
+ * <p>
+ * A stamp is obtained once per resolve and shared by the indexes of the
+ * catalog, each of which records the fingerprint of the stamp.
+ */
+final class CatalogStamp {
+
+    // The module ids in the catalog
+    final List<ModuleId> listing;
+
+    // The 64-bit FNV-1a hash of the module id strings and of the
+    // modification time of each module
+    final long fingerprint;
+
+    // Module name to the modification time of its directory, in
+    // nanoseconds, otherwise empty if the catalog is not located in a
+    // directory
+    private final Map<String, Long> modified;
+
+    private CatalogStamp(List<ModuleId> listing, Map<String, Long> modified) {
+        this.listing = listing;
+        this.modified = modified;
+
+        long[] times = new long[listing.size()];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = modified(listing.get(i));
+        }
+        this.fingerprint = IndexFiles.fingerprint(listing, times);
+    }
+
+    /**
+     * Obtain the stamp of a catalog.
+     *
+     * @param dir the directory in which the catalog is located, otherwise
+     * {@code null}.
+     * @throws IOException if there is an error using the catalog.
+     */
+    static CatalogStamp of(Catalog c, File dir) throws IOException {
+        List<ModuleId> listing = c.listDeclaringModuleIds();
+        Map<String, Long> modified = new HashMap<>();
+        if (dir != null) {
+            for (ModuleId mid : listing) {
+                if (!modified.containsKey(mid.name())) {
+                    modified.put(mid.name(), modified(new File(dir, mid.name())));
+                }
+            }
+        }
+        return new CatalogStamp(listing, modified);
+    }
+
+    private static long modified(File f) throws IOException {
+        try {
+            return Files.getLastModifiedTime(f.toPath()).to(TimeUnit.NANOSECONDS);
+        } catch (NoSuchFileException ex) {
+            // Not in the library directory, such as a module of a parent
+            return 0;
+        }
+    }
+
+    /**
+     * @return the modification time of a module, otherwise 0 if not known.
+     */
+    long modified(ModuleId mid) {
+        Long t = modified.get(mid.name());
+        return (t != null) ? t : 0;
+    }
+
+    /**
+     * Get the directory in which a catalog, or the catalog whose module
+     * info is cached, is located.
+     *
+     * @return the directory, otherwise {@code null} if the catalog is not
+     * a library located in a directory.
+     */
+    static File directory(Catalog c) {
+        if (c instanceof CachingCatalog) {
+            c = ((CachingCatalog) c).catalog();
+        }
+        if (!(c instanceof Library)) {
+            return null;
+        }
+
+        URI u;
+        try {
+            u = ((Library) c).location();
+        } catch (UnsupportedOperationException ex) {
+            return null;
+        }
+
+        if (u == null || !"file".equals(u.getScheme())) {
+            return null;
+        }
+
+        File d = new File(u);
+        return d.isDirectory() ? d : null;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.sat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.module.ModuleId;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Utilities for index files of a catalog, that are memory mapped when read
+ * and replaced atomically when written.
+ */
+final class IndexFiles {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private IndexFiles() {
+    }
+
+    /**
+     * Compute the fingerprint of module ids and of the modification time of
+     * each module, the 64-bit FNV-1a hash of the module id strings and
+     * modification times.
+     *
+     * @see CatalogStamp
+     */
+    static long fingerprint(List<ModuleId> mids, long[] modified) {
+        long h = FNV_OFFSET_BASIS;
+        for (int i = 0; i < mids.size(); i++) {
+            h = hash(h, mids.get(i).toString());
+            h = hash(h, modified[i]);
+        }
+        return h;
+    }
+
+    private static long hash(long h, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= FNV_PRIME;
+        }
+        h ^= '\n';
+        h *= FNV_PRIME;
+        return h;
+    }
+
+    private static long hash(long h, long x) {
+        for (int i = 0; i < 64; i += 8) {
+            h ^= (x >>> i) & 0xff;
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    static ByteBuffer map(File file) throws IOException {
+        try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+        }
+    }
+
+    static void write(ByteBuffer bb, File file) throws IOException {
+        File tmp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                out.getChannel().write(bb.duplicate());
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Read a string, encoded as the length followed by UTF-8 bytes.
+     */
+    static String string(ByteBuffer bb, int offset) {
+        int length = bb.getInt(offset);
+        byte[] bytes = new byte[length];
+        ByteBuffer dup = bb.duplicate();
+        dup.position(offset + 4);
+        dup.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
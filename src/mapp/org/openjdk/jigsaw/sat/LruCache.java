@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.sat;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe cache, bounded in size, that evicts the least recently used
+ * entries.
+ * <p>
+ * Entries are striped across segments, by hash code of the key, each
+ * segment being a synchronized access ordered map. Thus threads accessing
+ * keys of different segments do not contend.
+ */
+final class LruCache<K, V> {
+
+    private static final int SEGMENTS = 16;
+
+    private static final class Segment<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    private final List<Segment<K, V>> segments;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxSize the maximum number of entries.
+     */
+    LruCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException();
+        }
+
+        int n = Math.min(SEGMENTS, Integer.highestOneBit(maxSize));
+        this.segments = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            // Distribute the remainder over the first segments
+            segments.add(new Segment<K, V>(maxSize / n + (i < maxSize % n ? 1 : 0)));
+        }
+    }
+
+    private Segment<K, V> segment(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments.get(h & (segments.size() - 1));
+    }
+
+    /**
+     * @return the value, otherwise {@code null} if there is no entry for the
+     * key.
+     */
+    V get(K key) {
+        Segment<K, V> s = segment(key);
+        V v;
+        synchronized (s) {
+            v = s.get(key);
+        }
+
+        if (v != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return v;
+    }
+
+    void put(K key, V value) {
+        Segment<K, V> s = segment(key);
+        synchronized (s) {
+            s.put(key, value);
+        }
+    }
+
+    void remove(K key) {
+        Segment<K, V> s = segment(key);
+        synchronized (s) {
+            s.remove(key);
+        }
+    }
+
+    void clear() {
+        for (Segment<K, V> s : segments) {
+            synchronized (s) {
+                s.clear();
+            }
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment<K, V> s : segments) {
+            synchronized (s) {
+                size += s.size();
+            }
+        }
+        return size;
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.sat;
+
+import java.lang.module.ModuleId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.sat4j.core.VecInt;
+import org.sat4j.pb.IPBSolver;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.IConstr;
+import org.sat4j.specs.IVecInt;
+
+/**
+ * Pseudo-boolean constraints over dense integer variables representing
+ * module ids, module view/alias ids and the absence of optional modules.
+ * <p>
+ * Variables are numbered from 1, in order of first use, and literals are
+ * encoded as for DIMACS, a negative literal being the negation of a variable.
+ */
+final class ModuleConstraints {
+
+    /**
+     * A description of a constraint. The description is only formatted when
+     * required, for example when explaining why there is no solution.
+     * Collection arguments are copied, since a collection may be modified
+     * after the constraint is encoded.
+     */
+    static final class Label {
+
+        private final String format;
+
+        private final Object[] args;
+
+        Label(String format, Object... args) {
+            this.format = format;
+            this.args = args.clone();
+            for (int i = 0; i < args.length; i++) {
+                if (args[i] instanceof Collection) {
+                    this.args[i] = new ArrayList<>((Collection<?>) args[i]);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format(format, args);
+        }
+    }
+
+    /**
+     * A constraint that at least {@code degree} of the literals are satisfied.
+     * A clause is a constraint with a degree of 1.
+     */
+    static final class Constraint {
+
+        final Label label;
+
+        final int degree;
+
+        final int[] lits;
+
+        Constraint(Label label, int degree, int[] lits) {
+            this.label = label;
+            this.degree = degree;
+            this.lits = lits;
+        }
+    }
+
+    // Module id or view/alias id to variable
+    private final Map<ModuleId, Integer> idToVar = new HashMap<>();
+
+    // Optional module absence, or unmatched root, name to variable
+    private final Map<String, Integer> nameToVar = new HashMap<>();
+
+    // Variable to module id or view/alias id, or to name
+    // Index 0 is unused
+    private Object[] varToKey = new Object[64];
+
+    private int nVars;
+
+    private final List<Constraint> constraints = new ArrayList<>();
+
+    // The variables, and weights, of each level of the objective function,
+    // from the most to the least significant level
+    private int[][] objectiveVars = new int[0][];
+
+    private long[][] objectiveWeights = new long[0][];
+
+    /**
+     * Get the variable of a module id or view/alias id, creating it if
+     * not already present.
+     */
+    int var(ModuleId mid) {
+        Integer v = idToVar.get(mid);
+        if (v == null) {
+            v = newVar(mid);
+            idToVar.put(mid, v);
+        }
+        return v;
+    }
+
+    /**
+     * Get the variable representing the absence of modules of a given
+     * module name, creating it if not already present.
+     */
+    int absent(String moduleName) {
+        return named("*" + moduleName);
+    }
+
+    /**
+     * Get the variable representing a root query name that matches no modules,
+     * creating it if not already present.
+     */
+    int unmatched(String name) {
+        return named(name);
+    }
+
+    private int named(String name) {
+        Integer v = nameToVar.get(name);
+        if (v == null) {
+            v = newVar(name);
+            nameToVar.put(name, v);
+        }
+        return v;
+    }
+
+    private int newVar(Object key) {
+        int v = ++nVars;
+        if (v == varToKey.length) {
+            varToKey = Arrays.copyOf(varToKey, v * 2);
+        }
+        varToKey[v] = key;
+        return v;
+    }
+
+    /**
+     * @return the module id or view/alias id of a variable, otherwise
+     * {@code null} if the variable is not that of a module id or view/alias id.
+     */
+    ModuleId moduleId(int var) {
+        Object key = varToKey[var];
+        return (key instanceof ModuleId) ? (ModuleId) key : null;
+    }
+
+    int nVars() {
+        return nVars;
+    }
+
+    List<Constraint> constraints() {
+        return constraints;
+    }
+
+    void clause(Label label, int... lits) {
+        constraints.add(new Constraint(label, 1, lits));
+    }
+
+    void atLeast(Label label, int degree, int... lits) {
+        constraints.add(new Constraint(label, degree, lits));
+    }
+
+    /**
+     * Set the objective function, minimized lexicographically from the
+     * first level to the last.
+     */
+    void objective(int[][] vars, long[][] weights) {
+        this.objectiveVars = vars;
+        this.objectiveWeights = weights;
+    }
+
+    int objectiveLevels() {
+        return objectiveVars.length;
+    }
+
+    int[] objectiveVars(int level) {
+        return objectiveVars[level];
+    }
+
+    long[] objectiveWeights(int level) {
+        return objectiveWeights[level];
+    }
+
+    /**
+     * Create a variable that selects, when satisfied, an otherwise
+     * satisfied constraint.
+     */
+    int selector() {
+        return newVar("#" + (nVars + 1));
+    }
+
+    /**
+     * Add the variables and constraints to a solver.
+     *
+     * @param from the index of the first constraint to add, constraints 
+     * before are assumed to have been previously added.
+     * @param labels if not {@code null} the map is updated with the label
+     * of each constraint added to the solver.
+     * @return the number of constraints, the index from which to add
+     * constraints that are subsequently encoded.
+     * @throws ContradictionException if a constraint is trivially
+     * unsatisfiable.
+     */
+    int addConstraintsTo(IPBSolver s, int from, Map<IConstr, Label> labels) throws ContradictionException {
+        s.newVar(nVars);
+        s.setExpectedNumberOfClauses(constraints.size());
+
+        for (Constraint c : constraints.subList(from, constraints.size())) {
+            // Copy, solvers may modify the literals
+            IVecInt lits = new VecInt(Arrays.copyOf(c.lits, c.lits.length));
+            IConstr constr;
+            if (c.degree == 1) {
+                constr = s.addClause(lits);
+            } else {
+                constr = s.addAtLeast(lits, c.degree);
+            }
+
+            if (labels != null && constr != null) {
+                labels.put(constr, c.label);
+            }
+        }
+        return constraints.size();
+    }
+
+    /**
+     * Map a model, an array of literals, to the variables that are satisfied.
+     *
+     * @return an array, indexed by variable, of truth values.
+     */
+    boolean[] satisfied(int[] model) {
+        boolean[] sat = new boolean[nVars + 1];
+        for (int lit : model) {
+            if (lit > 0 && lit <= nVars) {
+                sat[lit] = true;
+            }
+        }
+        return sat;
+    }
+
+    String toString(int lit) {
+        Object key = varToKey[Math.abs(lit)];
+        return lit < 0 ? "-" + key : key.toString();
+    }
+
+    String toString(int[] lits, String sep) {
+        StringBuilder sb = new StringBuilder();
+        for (int lit : lits) {
+            if (sb.length() > 0) {
+                sb.append(sep);
+            }
+            sb.append(toString(lit));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,540 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.sat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.module.ModuleId;
+import java.lang.module.ModuleInfo;
+import java.lang.module.ModuleSystem;
+import java.lang.module.ModuleView;
+import java.lang.module.ViewDependence;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.openjdk.jigsaw.Catalog;
+import org.openjdk.jigsaw.JigsawModuleSystem;
+import static org.openjdk.jigsaw.sat.SatTrace.*;
+
+/**
+ * A compact snapshot of the module graph of a catalog, compiled once and
+ * stored in a file that is memory mapped when subsequently opened.
+ * <p>
+ * The snapshot contains the module ids of each module name sorted by
+ * version, the module ids matching each view dependence of each module, in
+ * declaration order, and the declaring module of each view and alias.
+ * Module info is still read from the catalog when traversing, since module
+ * graph listeners report on module info, but module ids are not found by
+ * module name.
+ * <p>
+ * The snapshot records the fingerprint of the stamp of the catalog, and is
+ * compiled again if the fingerprint differs when the snapshot is opened.
+ * Module info is only read when compiling.
+ *
+ * @see CatalogStamp
+ * <p>
+ * The snapshot has the following format, integers are big endian:
+ * <pre>
+ * int magic
+ * int version
+ * long fingerprint
+ * int number of ids, module ids and view/alias ids
+ * int number of names
+ * int number of modules
+ * int offset of id table: for each id,
+ *     int offset of id string, int index of declaring module id or -1
+ * int offset of id hash table: for each id, sorted by hash code,
+ *     int hash code, int index of id
+ * int offset of name table: for each name, sorted by hash code,
+ *     int hash code, int offset of name string, int offset of ids
+ * int offset of module table: for each module, sorted by index of id,
+ *     int index of module id, int offset of dependences
+ * strings: int length, UTF-8 bytes
+ * ids: int number of ids, int index of each id sorted by version
+ * dependences: int number of dependences n, int[n + 1] start of the
+ *     matching ids of each dependence, int index of each matching id
+ * </pre>
+ */
+final class ModuleGraphSnapshot {
+
+    private static final int MAGIC = 0x4A534753;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 44;
+
+    private static final ModuleSystem ms = JigsawModuleSystem.instance();
+
+    private final ByteBuffer bb;
+
+    private final int nIds;
+
+    private final int nNames;
+
+    private final int nModules;
+
+    private final int idsOffset;
+
+    private final int idHashOffset;
+
+    private final int namesOffset;
+
+    private final int modulesOffset;
+
+    // Decoded ids, indexed by id
+    private final ModuleId[] mids;
+
+    private ModuleGraphSnapshot(ByteBuffer bb) throws IOException {
+        if (bb.capacity() < HEADER_SIZE
+                || bb.getInt(0) != MAGIC
+                || bb.getInt(4) != VERSION) {
+            throw new IOException("Invalid module graph snapshot");
+        }
+
+        this.bb = bb;
+        this.nIds = bb.getInt(16);
+        this.nNames = bb.getInt(20);
+        this.nModules = bb.getInt(24);
+        this.idsOffset = bb.getInt(28);
+        this.idHashOffset = bb.getInt(32);
+        this.namesOffset = bb.getInt(36);
+        this.modulesOffset = bb.getInt(40);
+        this.mids = new ModuleId[nIds];
+    }
+
+    long fingerprint() {
+        return bb.getLong(8);
+    }
+
+    /**
+     * Open the snapshot of a catalog.
+     *
+     * @param c the catalog.
+     * @param stamp the stamp of the catalog.
+     * @param file the file in which the snapshot is stored, otherwise
+     * {@code null} if the snapshot is not stored.
+     * @param previous a previously opened snapshot, otherwise {@code null},
+     * that is returned if current.
+     * @throws IOException if there is an error using the catalog.
+     */
+    static ModuleGraphSnapshot open(Catalog c, CatalogStamp stamp,
+            File file, ModuleGraphSnapshot previous) throws IOException {
+        long fingerprint = stamp.fingerprint;
+
+        if (previous != null && previous.fingerprint() == fingerprint) {
+            return previous;
+        }
+
+        if (file != null && file.exists()) {
+            try {
+                ModuleGraphSnapshot mgs = new ModuleGraphSnapshot(IndexFiles.map(file));
+                if (mgs.fingerprint() == fingerprint) {
+                    return mgs;
+                }
+            } catch (IOException ex) {
+                if (tracing) {
+                    trace(1, "Module graph snapshot %s cannot be read: %s", file, ex.getMessage());
+                }
+            }
+        }
+
+        if (tracing) {
+            trace(1, "Module graph snapshot %s: compiling",
+                    file == null ? "in memory" : file);
+        }
+
+        ByteBuffer bb = compile(c, stamp.listing);
+        bb.putLong(8, fingerprint);
+
+        if (file != null) {
+            try {
+                IndexFiles.write(bb, file);
+                return new ModuleGraphSnapshot(IndexFiles.map(file));
+            } catch (IOException ex) {
+                // Use the snapshot without storing it
+                if (tracing) {
+                    trace(1, "Module graph snapshot %s cannot be written: %s", file, ex.getMessage());
+                }
+            }
+        }
+
+        return new ModuleGraphSnapshot(bb);
+    }
+
+    /**
+     * Find the module ids, and view/alias ids, of a module name.
+     *
+     * @return the module ids sorted from lowest to highest version.
+     */
+    List<ModuleId> findModuleIds(String name) {
+        int hash = name.hashCode();
+        int i = lowerBound(namesOffset, 12, nNames, hash);
+        for (; i < nNames && bb.getInt(namesOffset + i * 12) == hash; i++) {
+            int entry = namesOffset + i * 12;
+            if (IndexFiles.string(bb, bb.getInt(entry + 4)).equals(name)) {
+                return ids(bb.getInt(entry + 8));
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Get the module ids, and view/alias ids, matching a view dependence of
+     * a module.
+     *
+     * @param mid the module id.
+     * @param i the index of the view dependence, in declaration order.
+     * @return the matching module ids sorted from lowest to highest version,
+     * otherwise {@code null} if the module, or dependence, is not present.
+     */
+    List<ModuleId> matchingModuleIds(ModuleId mid, int i) {
+        int module = module(mid);
+        if (module < 0) {
+            return null;
+        }
+
+        int deps = bb.getInt(modulesOffset + module * 8 + 4);
+        int n = bb.getInt(deps);
+        if (i < 0 || i >= n) {
+            return null;
+        }
+
+        int from = bb.getInt(deps + 4 + i * 4);
+        int to = bb.getInt(deps + 4 + (i + 1) * 4);
+        int base = deps + 4 + (n + 1) * 4;
+        List<ModuleId> matching = new ArrayList<>(to - from);
+        for (int j = from; j < to; j++) {
+            matching.add(id(bb.getInt(base + j * 4)));
+        }
+        return matching;
+    }
+
+    /**
+     * Get the module id of the module declaring a module id or view/alias id.
+     *
+     * @return the module id, otherwise {@code null} if the id is not present.
+     */
+    ModuleId declaringModuleId(ModuleId mid) {
+        int i = index(mid);
+        if (i < 0) {
+            return null;
+        }
+
+        int d = bb.getInt(idsOffset + i * 8 + 4);
+        return d < 0 ? null : id(d);
+    }
+
+    // The index of an id, otherwise -1
+    private int index(ModuleId mid) {
+        int hash = mid.toString().hashCode();
+        int i = lowerBound(idHashOffset, 8, nIds, hash);
+        for (; i < nIds && bb.getInt(idHashOffset + i * 8) == hash; i++) {
+            int index = bb.getInt(idHashOffset + i * 8 + 4);
+            if (id(index).equals(mid)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    // The index in the module table of a module id, otherwise -1
+    private int module(ModuleId mid) {
+        int index = index(mid);
+        if (index < 0) {
+            return -1;
+        }
+
+        int lo = 0;
+        int hi = nModules - 1;
+        while (lo <= hi) {
+            int m = (lo + hi) >>> 1;
+            int v = bb.getInt(modulesOffset + m * 8);
+            if (v < index) {
+                lo = m + 1;
+            } else if (v > index) {
+                hi = m - 1;
+            } else {
+                return m;
+            }
+        }
+        return -1;
+    }
+
+    // The index of the first entry of a table, sorted by hash code, whose
+    // hash code is not less than a hash code
+    private int lowerBound(int offset, int entrySize, int n, int hash) {
+        int lo = 0;
+        int hi = n;
+        while (lo < hi) {
+            int m = (lo + hi) >>> 1;
+            if (bb.getInt(offset + m * entrySize) < hash) {
+                lo = m + 1;
+            } else {
+                hi = m;
+            }
+        }
+        return lo;
+    }
+
+    private List<ModuleId> ids(int offset) {
+        int n = bb.getInt(offset);
+        List<ModuleId> l = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            l.add(id(bb.getInt(offset + 4 + i * 4)));
+        }
+        return l;
+    }
+
+    private synchronized ModuleId id(int i) {
+        ModuleId mid = mids[i];
+        if (mid == null) {
+            mid = ms.parseModuleId(IndexFiles.string(bb, bb.getInt(idsOffset + i * 8)));
+            mids[i] = mid;
+        }
+        return mid;
+    }
+
+    /**
+     * Compile the snapshot of a catalog.
+     *
+     * @param listing the module ids in the catalog.
+     */
+    private static ByteBuffer compile(Catalog c, List<ModuleId> listing) throws IOException {
+        // Modules, the listing may include view/alias ids
+        Map<ModuleId, ModuleInfo> modules = new LinkedHashMap<>();
+        for (ModuleId mid : listing) {
+            ModuleInfo mi = c.readModuleInfo(mid);
+            if (mi != null && !modules.containsKey(mi.id())) {
+                modules.put(mi.id(), mi);
+            }
+        }
+
+        Writer w = new Writer();
+
+        // Names of modules, views, aliases and dependences
+        Set<String> names = new LinkedHashSet<>();
+        for (ModuleInfo mi : modules.values()) {
+            w.intern(mi.id());
+            names.add(mi.id().name());
+            for (ModuleView mv : mi.views()) {
+                w.declare(w.intern(mv.id()), mi.id());
+                names.add(mv.id().name());
+                for (ModuleId alias : mv.aliases()) {
+                    w.declare(w.intern(alias), mi.id());
+                    names.add(alias.name());
+                }
+            }
+            for (ViewDependence vd : mi.requiresModules()) {
+                names.add(vd.query().name());
+            }
+        }
+
+        Map<String, List<ModuleId>> nameToIds = new HashMap<>();
+        Map<String, Integer> nameToOffset = new LinkedHashMap<>();
+        for (String name : names) {
+            List<ModuleId> mids = c.findModuleIds(name);
+            Collections.sort(mids);
+            nameToIds.put(name, mids);
+            nameToOffset.put(name, w.ids(mids));
+        }
+
+        // Matching ids of the dependences of each module
+        int[][] moduleEntries = new int[modules.size()][];
+        int m = 0;
+        for (ModuleInfo mi : modules.values()) {
+            List<int[]> matching = new ArrayList<>();
+            for (ViewDependence vd : mi.requiresModules()) {
+                List<ModuleId> mids = nameToIds.get(vd.query().name());
+                int[] indexes = new int[mids.size()];
+                int n = 0;
+                for (ModuleId mid : mids) {
+                    if (ModuleGraphTraverser.matches(vd.query(), mid)) {
+                        indexes[n++] = w.intern(mid);
+                    }
+                }
+                matching.add(Arrays.copyOf(indexes, n));
+            }
+            moduleEntries[m++] = new int[]{w.intern(mi.id()), w.dependences(matching)};
+        }
+        Arrays.sort(moduleEntries, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b) {
+                return Integer.compare(a[0], b[0]);
+            }
+        });
+
+        return w.finish(nameToOffset, moduleEntries);
+    }
+
+    /**
+     * Writes the sections of a snapshot.
+     */
+    private static final class Writer {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        final DataOutputStream out = new DataOutputStream(bytes);
+
+        final Map<ModuleId, Integer> idToIndex = new HashMap<>();
+
+        final List<ModuleId> ids = new ArrayList<>();
+
+        final Map<Integer, Integer> declaring = new HashMap<>();
+
+        final Map<String, Integer> strings = new HashMap<>();
+
+        int offset() {
+            return HEADER_SIZE + out.size();
+        }
+
+        int intern(ModuleId mid) {
+            Integer i = idToIndex.get(mid);
+            if (i == null) {
+                i = ids.size();
+                idToIndex.put(mid, i);
+                ids.add(mid);
+            }
+            return i;
+        }
+
+        void declare(int i, ModuleId mid) {
+            declaring.put(i, intern(mid));
+        }
+
+        int string(String s) throws IOException {
+            Integer offset = strings.get(s);
+            if (offset == null) {
+                offset = offset();
+                byte[] b = s.getBytes(IndexFiles.UTF_8);
+                out.writeInt(b.length);
+                out.write(b);
+                strings.put(s, offset);
+            }
+            return offset;
+        }
+
+        int ids(List<ModuleId> mids) throws IOException {
+            int[] indexes = new int[mids.size()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = intern(mids.get(i));
+            }
+
+            int offset = offset();
+            out.writeInt(indexes.length);
+            for (int i : indexes) {
+                out.writeInt(i);
+            }
+            return offset;
+        }
+
+        int dependences(List<int[]> matching) throws IOException {
+            int offset = offset();
+            out.writeInt(matching.size());
+            int start = 0;
+            out.writeInt(start);
+            for (int[] indexes : matching) {
+                start += indexes.length;
+                out.writeInt(start);
+            }
+            for (int[] indexes : matching) {
+                for (int i : indexes) {
+                    out.writeInt(i);
+                }
+            }
+            return offset;
+        }
+
+        ByteBuffer finish(Map<String, Integer> nameToOffset, int[][] moduleEntries) throws IOException {
+            // Strings of ids and names
+            int[] idStrings = new int[ids.size()];
+            for (int i = 0; i < idStrings.length; i++) {
+                idStrings[i] = string(ids.get(i).toString());
+            }
+            int[][] nameEntries = new int[nameToOffset.size()][];
+            int n = 0;
+            for (Map.Entry<String, Integer> e : nameToOffset.entrySet()) {
+                nameEntries[n++] = new int[]{e.getKey().hashCode(), string(e.getKey()), e.getValue()};
+            }
+
+            int idsOffset = offset();
+            for (int i = 0; i < ids.size(); i++) {
+                Integer d = declaring.get(i);
+                out.writeInt(idStrings[i]);
+                out.writeInt(d == null ? -1 : d);
+            }
+
+            int[][] idHashEntries = new int[ids.size()][];
+            for (int i = 0; i < ids.size(); i++) {
+                idHashEntries[i] = new int[]{ids.get(i).toString().hashCode(), i};
+            }
+            Comparator<int[]> byHash = new Comparator<int[]>() {
+                @Override
+                public int compare(int[] a, int[] b) {
+                    return Integer.compare(a[0], b[0]);
+                }
+            };
+            Arrays.sort(idHashEntries, byHash);
+            int idHashOffset = offset();
+            for (int[] e : idHashEntries) {
+                out.writeInt(e[0]);
+                out.writeInt(e[1]);
+            }
+
+            Arrays.sort(nameEntries, byHash);
+            int namesOffset = offset();
+            for (int[] e : nameEntries) {
+                out.writeInt(e[0]);
+                out.writeInt(e[1]);
+                out.writeInt(e[2]);
+            }
+
+            int modulesOffset = offset();
+            for (int[] e : moduleEntries) {
+                out.writeInt(e[0]);
+                out.writeInt(e[1]);
+            }
+
+            out.flush();
+            ByteBuffer bb = ByteBuffer.allocate(offset());
+            bb.putInt(MAGIC).putInt(VERSION).putLong(0).
+                    putInt(ids.size()).putInt(nameEntries.length).putInt(moduleEntries.length).
+                    putInt(idsOffset).putInt(idHashOffset).
+                    putInt(namesOffset).putInt(modulesOffset);
+            bb.put(bytes.toByteArray());
+            bb.flip();
+            return bb;
+        }
+    }
+}
@@ -29,242 +29,521 @@ import java.lang.module.ModuleIdQuery;
 import java.lang.module.ModuleInfo;
 import java.lang.module.ModuleView;
 import java.lang.module.ViewDependence;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RecursiveAction;
 import org.openjdk.jigsaw.Catalog;
 import org.openjdk.jigsaw.sat.SatTrace;
+import static org.openjdk.jigsaw.sat.SatTrace.tracing;
 
 /**
  * Traverses the module graph, for a given set of root queries, using a 
  * depth first search and reports, in search order, on module dependencies 
  * for modules present in a catalog.
- *
+ * <p>
+ * The module graph may be explored in parallel, ahead of the depth first
+ * search, reading module ids and module info from the catalog on a fork/join
+ * pool shared by the traversals of the traverser. The depth first search, 
+ * and the reporting of module dependencies, remains sequential so that 
+ * modules are reported in the same order.
  */
 public class ModuleGraphTraverser {
 
     private final Catalog cat;
 
-    public ModuleGraphTraverser(Catalog cat) {
-        this.cat = cat;
-    }
-
-    static class State {
-
-        final ModuleGraphListener mgl;
-
-        final Set<ModuleId> visited = new HashSet<>();
+    // The number of threads exploring the module graph, 1 if not explored
+    private int parallelism = 1;
 
-        final Deque<Node> stack = new LinkedList<>();
+    // The pool of threads exploring the module graph, otherwise null if
+    // not explored
+    private volatile ForkJoinPool pool;
 
-        public State(ModuleGraphListener mgl, Collection<ModuleId> previouslyVisited) {
-            this.mgl = mgl;
-            visited.addAll(previouslyVisited);
-        }
+    /**
+     *
+     * @param cat the catalog of modules, module info read from the catalog
+     * is cached unless the catalog is a {@link CachingCatalog}.
+     */
+    public ModuleGraphTraverser(Catalog cat) {
+        this.cat = CachingCatalog.of(cat);
+    }
 
-        boolean isVisited(ModuleInfo mi) {
-            return !visited.add(mi.id());
+    /**
+     * Set the number of threads that explore the module graph, ahead of the
+     * depth first search, reading from the catalog.
+     * <p>
+     * The catalog must support concurrent reads if the number of threads is
+     * greater than 1.
+     *
+     * @param parallelism the number of threads, 1 if the module graph is 
+     * not explored.
+     * @throws IllegalArgumentException if {@code parallelism} is less than 1.
+     */
+    public synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException();
         }
-
-        void push(Node n) {
-            stack.addFirst(n);
+        if (parallelism != this.parallelism) {
+            if (pool != null) {
+                // Tasks of traversals in progress complete
+                pool.shutdown();
+            }
+            pool = (parallelism > 1) ? new ForkJoinPool(parallelism) : null;
+            this.parallelism = parallelism;
         }
+    }
 
-        Node pop() {
-            return stack.removeFirst();
+    /**
+     * @return true if a module id matches a query.
+     */
+    static boolean matches(ModuleIdQuery midq, ModuleId mid) {
+        if (midq.matches(mid)) {
+            return true;
         }
 
-        boolean isEmpty() {
-            return stack.isEmpty();
-        }
+        // Hack
+        String moduleName = midq.name();
+        return moduleName.equals("java.base") && moduleName.equals(mid.name());
     }
 
-    abstract class Node {
+    /**
+     * Explores the module graph reading module ids, and module info, that 
+     * the depth first search will subsequently require.
+     * <p>
+     * Each module name and module id is read at most once, by the first of
+     * an exploring task or the depth first search that requires it. Module
+     * ids that the snapshot of the module graph provides to the depth first
+     * search are not found in the catalog.
+     */
+    class Explorer {
 
-        final int depth;
+        final ForkJoinPool pool;
 
-        Node(int depth) {
-            this.depth = depth;
-        }
+        // Snapshot of the module graph, otherwise null
+        final ModuleGraphSnapshot snapshot;
+
+        // True once the depth first search is done, tasks not yet started
+        // do nothing
+        volatile boolean done;
+
+        final ConcurrentMap<String, FutureTask<List<ModuleId>>> names = new ConcurrentHashMap<>();
+
+        final ConcurrentMap<ModuleId, FutureTask<ModuleInfo>> infos = new ConcurrentHashMap<>();
 
-        abstract void process(State state) throws Exception;
+        // Queries and module ids that have been explored
+        final Set<Object> explored = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
 
-        boolean tracing() {
-            return SatTrace.tracing;
+        Explorer(ForkJoinPool pool, ModuleGraphSnapshot snapshot,
+                Collection<ModuleId> previouslyVisited) {
+            this.pool = pool;
+            this.snapshot = snapshot;
+            explored.addAll(previouslyVisited);
         }
-        
-        void trace(Object o) {
-            if (!tracing()) {
+
+        /**
+         * Explore from a root query.
+         */
+        void explore(ModuleIdQuery midq) {
+            if (!explored.add(midq)) {
                 return;
             }
 
-            SatTrace.trace(1, depth, o.toString());
+            try {
+                if (snapshot != null) {
+                    for (ModuleId mid : snapshot.findModuleIds(midq.name())) {
+                        if (matches(midq, mid) && explored.add(mid)) {
+                            pool.execute(new ModuleTask(mid));
+                        }
+                    }
+                } else {
+                    pool.execute(new QueryTask(midq));
+                }
+            } catch (RejectedExecutionException e) {
+                // The pool is shut down, the depth first search reads from
+                // the catalog
+            }
+        }
+
+        void done() {
+            done = true;
         }
 
-        StringBuilder b(int depth, Object o) {
-            StringBuilder sb = new StringBuilder();
-            for (int i = 0; i < depth; i++) {
-                sb.append(" ");
+        List<ModuleId> findModuleIds(final String moduleName) throws Exception {
+            FutureTask<List<ModuleId>> f = names.get(moduleName);
+            if (f == null) {
+                FutureTask<List<ModuleId>> nf = new FutureTask<>(new Callable<List<ModuleId>>() {
+                    @Override
+                    public List<ModuleId> call() throws Exception {
+                        return Collections.unmodifiableList(cat.findModuleIds(moduleName));
+                    }
+                });
+                f = names.putIfAbsent(moduleName, nf);
+                if (f == null) {
+                    f = nf;
+                    f.run();
+                }
             }
-            return sb.append(o);
+            return get(f);
         }
-    }
 
-    class ModuleQueryNode extends Node {
+        ModuleInfo readModuleInfo(final ModuleId mid) throws Exception {
+            FutureTask<ModuleInfo> f = infos.get(mid);
+            if (f == null) {
+                FutureTask<ModuleInfo> nf = new FutureTask<>(new Callable<ModuleInfo>() {
+                    @Override
+                    public ModuleInfo call() throws Exception {
+                        return cat.readModuleInfo(mid);
+                    }
+                });
+                f = infos.putIfAbsent(mid, nf);
+                if (f == null) {
+                    f = nf;
+                    f.run();
+                }
+            }
+            return get(f);
+        }
 
-        final ModuleIdQuery midq;
+        private <T> T get(FutureTask<T> f) throws Exception {
+            try {
+                return f.get();
+            } catch (ExecutionException e) {
+                Throwable t = e.getCause();
+                if (t instanceof Exception) {
+                    throw (Exception) t;
+                } else if (t instanceof Error) {
+                    throw (Error) t;
+                }
+                throw e;
+            }
+        }
 
-        ModuleQueryNode(int depth, ModuleIdQuery midq) {
-            super(depth);
+        class QueryTask extends RecursiveAction {
 
-            this.midq = midq;
-        }
+            private static final long serialVersionUID = 1L;
 
-        @Override
-        void process(State s) throws Exception {
-            process(s, midq);
-            
-            String moduleName = midq.name();
+            final ModuleIdQuery midq;
 
-            // Find all module id versions of module name
-            List<ModuleId> mids = cat.findModuleIds(moduleName);
-            // Sort from lowest to highest version
-            Collections.sort(mids);
+            QueryTask(ModuleIdQuery midq) {
+                this.midq = midq;
+            }
 
-            for (ModuleId mid : mids) {
-                if (midq.matches(mid)) {
-                    process(s, mid);
-                } else {
-                    // Hack
-                    if (moduleName.equals("java.base") && moduleName.equals(mid.name())) {
-                        process(s, mid);
+            @Override
+            protected void compute() {
+                if (done) {
+                    return;
+                }
+                
+                try {
+                    for (ModuleId mid : findModuleIds(midq.name())) {
+                        if (matches(midq, mid) && explored.add(mid)) {
+                            new ModuleTask(mid).fork();
+                        }
                     }
+                } catch (Exception e) {
+                    // Reported if, and when, required by the depth first search
                 }
             }
         }
 
-        protected void process(State s, ModuleIdQuery midq) {
-            s.mgl.onRootDependence(midq);                        
-        }
-        
-        protected void process(State s, ModuleId mid) {
-            s.push(new ModuleNode(depth + 1, midq, mid));
+        class ModuleTask extends RecursiveAction {
+
+            private static final long serialVersionUID = 1L;
+
+            final ModuleId mid;
+
+            ModuleTask(ModuleId mid) {
+                this.mid = mid;
+            }
+
+            @Override
+            protected void compute() {
+                if (done) {
+                    return;
+                }
+                
+                try {
+                    ModuleInfo mi = readModuleInfo(mid);
+                    // The module id may be that of a view or alias
+                    if (mi == null || (!mi.id().equals(mid) && !explored.add(mi.id()))) {
+                        return;
+                    }
+
+                    int i = 0;
+                    for (ViewDependence vd : mi.requiresModules()) {
+                        List<ModuleId> matching = (snapshot != null)
+                                ? snapshot.matchingModuleIds(mi.id(), i)
+                                : null;
+                        i++;
+                        if (matching != null) {
+                            for (ModuleId m : matching) {
+                                if (explored.add(m)) {
+                                    new ModuleTask(m).fork();
+                                }
+                            }
+                        } else if (explored.add(vd.query())) {
+                            new QueryTask(vd.query()).fork();
+                        }
+                    }
+                } catch (Exception e) {
+                    // Reported if, and when, required by the depth first search
+                }
+            }
         }
     }
 
-    class ModuleNode extends Node {
+    /**
+     * A module, or a root, on the stack of the depth first search.
+     * <p>
+     * A frame iterates over the view dependences of a module and, for the
+     * current view dependence (or root query), over the matching module ids.
+     * Thus frames are allocated for visited modules, rather than for each
+     * dependence.
+     */
+    static final class Frame {
+
+        // The depth of the module, or 0 for a root
+        final int depth;
+
+        // The module, otherwise null for a root
+        final ModuleInfo mi;
+
+        // The view dependences of the module, otherwise null for a root
+        final Iterator<ViewDependence> vds;
+
+        // The current view dependence, otherwise null for a root
+        ViewDependence vd;
+
+        // The index of the current view dependence, in declaration order
+        int vdIndex = -1;
 
-        final ModuleIdQuery midq;
+        // The current query
+        ModuleIdQuery midq;
 
-        final ModuleId mid;
+        // The module ids of the current query, sorted from lowest to highest
+        // version
+        List<ModuleId> mids = Collections.emptyList();
 
-        public ModuleNode(int depth, ModuleIdQuery midq, ModuleId m) {
-            super(depth);
+        // The index of the next module id, from highest to lowest version
+        int next = -1;
 
-            this.midq = midq;
-            this.mid = m;
+        Frame(int depth, ModuleInfo mi) {
+            this.depth = depth;
+            this.mi = mi;
+            this.vds = (mi != null) ? mi.requiresModules().iterator() : null;
         }
 
-        @Override
-        void process(State s) throws Exception {
-            ModuleInfo mi = cat.readModuleInfo(mid);
+        /**
+         * @return the depth of the module ids of the current query.
+         */
+        int midDepth() {
+            return (vd == null) ? depth + 1 : depth + 2;
+        }
+    }
 
-            process(s, mi);
+    class State {
 
-            if (s.isVisited(mi)) {
-                if (tracing()) {
-                    trace(mid + " -> module " + mi.id() + " VISITED");
-                }
-                return;
-            }
+        final ModuleGraphListener mgl;
 
-            if (tracing()) {
-                trace(mid + " -> module " + mi.id());
+        // Snapshot of the module graph, otherwise null
+        final ModuleGraphSnapshot snapshot;
 
-                for (ModuleView mv : mi.views()) {
-                    StringBuilder sb = new StringBuilder("-> view ").append(mv.id());
+        // Explorer of the module graph, otherwise null
+        Explorer explorer;
 
-                    for (ModuleId alias : mv.aliases()) {
-                        sb.append(" -> alias ").append(alias);
-                    }
-                    trace(sb.toString());
-                }
+        final Deque<Frame> stack = new ArrayDeque<>();
+
+        // Interned module ids, module ids of modules and of views or aliases
+        final Map<ModuleId, Integer> ids = new HashMap<>();
+
+        // Interned module ids that have been visited
+        final BitSet visited = new BitSet();
+
+        // The module view of a visited interned module id, otherwise null
+        // if the module id was previously visited
+        ModuleView[] views = new ModuleView[64];
+
+        public State(ModuleGraphListener mgl, ModuleGraphSnapshot snapshot,
+                Collection<ModuleId> previouslyVisited) {
+            this.mgl = mgl;
+            this.snapshot = snapshot;
+            for (ModuleId mid : previouslyVisited) {
+                visited.set(intern(mid));
             }
+        }
 
-            // This assumes dependencies are ordered as declared in module-info
-            List<ViewDependence> vds = new ArrayList<>(mi.requiresModules());
-            // Preserve declared order on stack
-            Collections.reverse(vds);
-            for (ViewDependence vd : vds) {
-                if (tracing()) {
-                    trace(vd);
+        int intern(ModuleId mid) {
+            Integer i = ids.get(mid);
+            if (i == null) {
+                i = ids.size();
+                ids.put(mid, i);
+                if (i == views.length) {
+                    views = Arrays.copyOf(views, i * 2);
                 }
-                process(s, mi, vd);
             }
+            return i;
         }
 
-        protected void process(State s, ModuleInfo mi) {
-            s.mgl.onMatchingRootDependence(midq, mid, getModuleView(mi, mid));
+        List<ModuleId> findModuleIds(String moduleName) throws Exception {
+            return (explorer != null)
+                    ? new ArrayList<>(explorer.findModuleIds(moduleName))
+                    : cat.findModuleIds(moduleName);
         }
 
-        protected void process(State s, ModuleInfo mi, ViewDependence vd) {
-            s.push(new ViewDependenceNode(depth + 1, mi, vd));
+        ModuleInfo readModuleInfo(ModuleId mid) throws Exception {
+            return (explorer != null)
+                    ? explorer.readModuleInfo(mid)
+                    : cat.readModuleInfo(mid);
         }
-    }
 
-    class ViewDependenceNode extends ModuleQueryNode {
+        /**
+         * Set the current query of a frame, finding the module ids.
+         */
+        void query(Frame f, ModuleIdQuery midq) throws Exception {
+            f.midq = midq;
+
+            List<ModuleId> mids = null;
+            if (snapshot != null) {
+                // Module ids sorted from lowest to highest version
+                mids = (f.mi != null)
+                        ? snapshot.matchingModuleIds(f.mi.id(), f.vdIndex)
+                        : snapshot.findModuleIds(midq.name());
+            }
+            if (mids == null) {
+                // Find all module id versions of module name
+                mids = findModuleIds(midq.name());
+                // Sort from lowest to highest version
+                Collections.sort(mids);
+            }
+            f.mids = mids;
+            // Process from highest to lowest version, as if pushed on the 
+            // stack from lowest to highest
+            f.next = f.mids.size() - 1;
+        }
 
-        final ModuleInfo rmi;
+        /**
+         * Process the next module id of the current query of a frame.
+         *
+         * @return the frame of the module if not previously visited, 
+         * otherwise {@code null}.
+         */
+        Frame next(Frame f) throws Exception {
+            ModuleId mid = f.mids.get(f.next--);
+            if (!matches(f.midq, mid)) {
+                return null;
+            }
 
-        final ViewDependence vd;
+            int depth = f.midDepth();
 
-        ViewDependenceNode(int depth, ModuleInfo rmi, ViewDependence vd) {
-            super(depth, vd.query());
-            this.rmi = rmi;
-            this.vd = vd;
-        }
+            // Check if visited before reading the module info
+            int i = intern(mid);
+            boolean isVisited = visited.get(i);
+            if (isVisited && views[i] != null) {
+                matching(f, depth, mid, views[i]);
+                if (tracing) {
+                    trace(depth, mid + " -> VISITED");
+                }
+                return null;
+            }
 
-        @Override
-        protected void process(State s, ModuleIdQuery midq) {
-            s.mgl.onViewDependence(depth, rmi, vd);
-        }
+            ModuleInfo mi = readModuleInfo(mid);
+            ModuleView mv = getModuleView(mi, mid);
+            matching(f, depth, mid, mv);
 
-        @Override
-        protected void process(State s, ModuleId dmid) {
-            s.push(new ModuleNodeWithViewDependency(depth + 1, rmi, vd, dmid));
-        }
-    }
+            visited.set(i);
+            views[i] = mv;
 
-    class ModuleNodeWithViewDependency extends ModuleNode {
+            // The module id may be that of a view or alias of the module
+            if (!mi.id().equals(mid)) {
+                i = intern(mi.id());
+                isVisited = visited.get(i);
+                visited.set(i);
+                if (views[i] == null) {
+                    views[i] = getModuleView(mi, mi.id());
+                }
+            }
+            if (isVisited) {
+                if (tracing) {
+                    trace(depth, mid + " -> module " + mi.id() + " VISITED");
+                }
+                return null;
+            }
 
-        final ModuleInfo rmi;
+            if (tracing) {
+                trace(depth, mid + " -> module " + mi.id());
 
-        final ViewDependence vd;
+                for (ModuleView v : mi.views()) {
+                    StringBuilder sb = new StringBuilder("-> view ").append(v.id());
 
-        final ModuleId dmid;
+                    for (ModuleId alias : v.aliases()) {
+                        sb.append(" -> alias ").append(alias);
+                    }
+                    trace(depth, sb.toString());
+                }
+            }
 
-        ModuleNodeWithViewDependency(int depth, ModuleInfo rmi, ViewDependence vd, ModuleId dmid) {
-            super(depth, vd.query(), dmid);
+            return new Frame(depth, mi);
+        }
 
-            this.rmi = rmi;
-            this.vd = vd;
-            this.dmid = dmid;
+        void matching(Frame f, int depth, ModuleId mid, ModuleView mv) {
+            if (f.vd == null) {
+                mgl.onMatchingRootDependence(f.midq, mid, mv);
+            } else {
+                mgl.onMatchingViewDependence(depth, f.mi, f.vd, mid, mv);
+            }
         }
 
-        @Override
-        protected void process(State s, ModuleInfo mi) {
-            s.mgl.onMatchingViewDependence(depth, rmi, vd, dmid, getModuleView(mi, dmid));
+        /**
+         * Depth first search from a root query.
+         */
+        void search(ModuleIdQuery root) throws Exception {
+            Frame rf = new Frame(0, null);
+            mgl.onRootDependence(root);
+            query(rf, root);
+            stack.push(rf);
+
+            while (!stack.isEmpty()) {
+                Frame f = stack.peek();
+                if (f.next >= 0) {
+                    Frame mf = next(f);
+                    if (mf != null) {
+                        stack.push(mf);
+                    }
+                } else if (f.vds != null && f.vds.hasNext()) {
+                    // This assumes dependencies are ordered as declared in 
+                    // module-info
+                    f.vd = f.vds.next();
+                    f.vdIndex++;
+                    if (tracing) {
+                        trace(f.depth + 1, f.vd.toString());
+                    }
+                    mgl.onViewDependence(f.depth + 1, f.mi, f.vd);
+                    query(f, f.vd.query());
+                } else {
+                    stack.pop();
+                }
+            }
         }
 
-        @Override
-        protected void process(State s, ModuleInfo mi, ViewDependence vd) {
-            s.push(new ViewDependenceNode(depth + 1, mi, vd));
+        void trace(int depth, String s) {
+            SatTrace.trace(1, depth, s);
         }
     }
 
@@ -283,24 +562,46 @@ public class ModuleGraphTraverser {
     }
     
     public void traverse(ModuleGraphListener mgl, Collection<ModuleId> previouslyVisited, Collection<ModuleIdQuery> midqs) throws ModuleGraphTraversalException {
+        traverse(mgl, null, previouslyVisited, midqs);
+    }
+
+    /**
+     * Traverse the module graph, obtaining the module ids of root queries
+     * and view dependences from a snapshot of the module graph of the
+     * catalog.
+     *
+     * @param snapshot the snapshot, otherwise {@code null} if module ids are
+     * found in the catalog.
+     */
+    void traverse(ModuleGraphListener mgl, ModuleGraphSnapshot snapshot,
+            Collection<ModuleId> previouslyVisited, Collection<ModuleIdQuery> midqs) throws ModuleGraphTraversalException {
         Objects.requireNonNull(mgl);
         Objects.requireNonNull(midqs);
 
-        State s = new State(mgl, previouslyVisited);
+        State s = new State(mgl, snapshot, previouslyVisited);
 
-        // Add roots, in order of declaration
-        for (ModuleIdQuery midq : midqs) {
-            s.stack.addLast(new ModuleQueryNode(0, midq));
+        ForkJoinPool p = pool;
+        if (p != null) {
+            s.explorer = new Explorer(p, snapshot, previouslyVisited);
+            for (ModuleIdQuery midq : midqs) {
+                s.explorer.explore(midq);
+            }
         }
+        
         // Depth first search of module dependency graph
         try {
-            while (!s.isEmpty()) {
-                s.pop().process(s);
+            // Roots, in order of declaration
+            for (ModuleIdQuery midq : midqs) {
+                s.search(midq);
             }
         } catch (ModuleGraphTraversalException e) {
             throw e;
         } catch (Exception e) {
             throw new ModuleGraphTraversalException(e);
+        } finally {
+            if (s.explorer != null) {
+                s.explorer.done();
+            }
         }
     }
 }
\ No newline at end of file
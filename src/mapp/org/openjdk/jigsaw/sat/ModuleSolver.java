@@ -0,0 +1,1112 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.sat;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.openjdk.jigsaw.sat.ModuleConstraints.Constraint;
+import static org.openjdk.jigsaw.sat.SatTrace.*;
+import org.sat4j.core.LiteralsUtils;
+import org.sat4j.core.Vec;
+import org.sat4j.core.VecInt;
+import org.sat4j.minisat.core.ICDCL;
+import org.sat4j.minisat.core.IOrder;
+import org.sat4j.minisat.core.IPhaseSelectionStrategy;
+import org.sat4j.pb.IPBSolver;
+import org.sat4j.pb.ObjectiveFunction;
+import org.sat4j.pb.SolverFactory;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.ISolverService;
+import org.sat4j.specs.IVec;
+import org.sat4j.specs.IVecInt;
+import org.sat4j.specs.TimeoutException;
+import org.sat4j.tools.SearchListenerAdapter;
+
+/**
+ * An incremental solver of module constraints.
+ * <p>
+ * Constraints are added to the same solver as they are encoded, and the
+ * objective function is minimized under assumptions, using bounds that are
+ * retracted once solving completes. Thus constraints, and clauses learnt
+ * from those constraints, are retained when solving again with further
+ * constraints.
+ * <p>
+ * Constraints are unit propagated before being added, and only the residual
+ * constraints, and the variables that are not fixed, are solved.
+ * <p>
+ * The objective function is minimized lexicographically, level by level.
+ * Once the least value of a level is found it is bound for the subsequent
+ * levels, thus the weights of each level need only order the variables of
+ * that level.
+ * <p>
+ * Solving may be limited by a budget of time and of conflicts, in which
+ * case the best model found within the budget is returned.
+ * <p>
+ * Solving may be hinted with a model, such as that of a previous solution.
+ * The hint sets the initial phase of decisions and, if the hint satisfies
+ * the constraints, is the first model, thus bounding the least value.
+ * <p>
+ * If solving in parallel the residual constraints are decomposed into
+ * components that share no variables. Each level of the objective function
+ * is a sum over the variables, thus the least value is the sum of the least
+ * values of each component, and components are solved independently, each
+ * with its own solver.
+ * <p>
+ * If solving with a portfolio each component is solved, in parallel, by
+ * solvers of different configurations. The first solver to prove the least
+ * value, or that there is no solution, wins and the other solvers are
+ * cancelled.
+ */
+final class ModuleSolver {
+
+    // The names of the solver configurations of a portfolio, in order of
+    // preference, differing in learning, restarts and inference
+    private static final String[] PORTFOLIO = {
+        "Default",
+        "ResolutionGlucose21",
+        "CuttingPlanes",
+        "SAT",
+        "UNSAT",
+        "ResolutionSimpleRestarts"
+    };
+
+    private final ModuleConstraints cs;
+
+    // The incremental solver, created when first solving
+    private IPBSolver s;
+
+    // The name of the solver configuration
+    private String configuration = PORTFOLIO[0];
+
+    private final UnitPropagator up;
+
+    // The number of constraints added to the solver
+    private int added;
+
+    // The number of fixed variables added to the solver
+    private int fixedAdded;
+
+    // The number of variables when constraints were last added
+    private int solverVars;
+
+    // The deadline of solving, relative to System.nanoTime(), if timed
+    private long deadline;
+
+    private boolean timed;
+
+    // The number of conflicts of the solver at which solving stops,
+    // otherwise 0 if not limited
+    private long maxConflicts;
+
+    // The conflict budget of each solving, otherwise 0 if not limited
+    private int conflictBudget;
+
+    // True if the last model solved is the least value of the objective
+    // function
+    private boolean optimal;
+
+    // The number of threads that solve independent components
+    private int parallelism = 1;
+
+    // The number of solvers of a portfolio, 1 if not solving with a
+    // portfolio
+    private int portfolio = 1;
+
+    // The executor of the solvers of a portfolio
+    private Executor portfolioExecutor;
+
+    // The executor of the threads that solve independent components
+    private Executor componentExecutor;
+
+    // The literals of the hinted model, otherwise null if not hinted
+    private int[] hint;
+
+    ModuleSolver(ModuleConstraints cs) {
+        this.cs = cs;
+        this.up = new UnitPropagator(cs);
+    }
+
+    private IPBSolver newSolver(String name) {
+        IPBSolver solver = (IPBSolver) SolverFactory.instance().createSolverByName(name);
+        if (solver == null) {
+            solver = SolverFactory.newDefault();
+        }
+        if (hint != null && solver instanceof ICDCL) {
+            IOrder order = ((ICDCL<?>) solver).getOrder();
+            order.setPhaseSelectionStrategy(
+                    new HintedPhaseSelection(order.getPhaseSelectionStrategy()));
+        }
+        return solver;
+    }
+
+    /**
+     * Set the hinted model of subsequent solving.
+     * <p>
+     * The hint applies to solvers created thereafter, thus is set before
+     * first solving.
+     *
+     * @param hint the literals of the hinted model, which need not assign
+     * all variables, otherwise {@code null} if not hinted.
+     */
+    void setHint(int[] hint) {
+        this.hint = hint;
+    }
+
+    /**
+     * Select the phase of decisions as hinted, then as selected by the
+     * strategy of the solver.
+     * <p>
+     * Phases are initialized by the solver each time it solves, whereupon
+     * the hinted phases are reset.
+     */
+    private final class HintedPhaseSelection implements IPhaseSelectionStrategy {
+
+        private static final long serialVersionUID = 1L;
+
+        private final IPhaseSelectionStrategy ps;
+
+        HintedPhaseSelection(IPhaseSelectionStrategy ps) {
+            this.ps = ps;
+        }
+
+        @Override
+        public void init(int nlength) {
+            ps.init(nlength);
+            int[] lits = hint;
+            if (lits != null) {
+                for (int lit : lits) {
+                    int var = Math.abs(lit);
+                    if (var < nlength) {
+                        ps.init(var, (lit > 0)
+                                ? LiteralsUtils.posLit(var)
+                                : LiteralsUtils.negLit(var));
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void init(int var, int p) {
+            ps.init(var, p);
+        }
+
+        @Override
+        public void updateVar(int p) {
+            ps.updateVar(p);
+        }
+
+        @Override
+        public void assignLiteral(int p) {
+            ps.assignLiteral(p);
+        }
+
+        @Override
+        public int select(int var) {
+            return ps.select(var);
+        }
+
+        @Override
+        public void updateVarAtDecisionLevel(int q) {
+            ps.updateVarAtDecisionLevel(q);
+        }
+    }
+
+    /**
+     * Set the budget of subsequent solving, from now.
+     *
+     * @param timeoutMs the time budget in milliseconds, otherwise 0 if not
+     * limited.
+     * @param conflicts the conflict budget, otherwise 0 if not limited.
+     */
+    void setBudget(long timeoutMs, int conflicts) {
+        this.timed = timeoutMs > 0;
+        this.deadline = System.nanoTime() + timeoutMs * 1000000;
+        this.conflictBudget = conflicts;
+        this.maxConflicts = (conflicts > 0) ? ((s != null) ? conflicts(s) : 0) + conflicts : 0;
+    }
+
+    /**
+     * Set the number of threads that solve independent components of the
+     * residual constraints.
+     *
+     * @param parallelism the number of threads, 1 if the constraints are
+     * not decomposed.
+     */
+    void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Set the solver configuration, before first solving.
+     *
+     * @param name the name of the sat4j PB solver configuration.
+     */
+    void setConfiguration(String name) {
+        this.configuration = name;
+    }
+
+    /**
+     * Set the number of solvers, of different configurations, that race to
+     * solve each component.
+     *
+     * @param portfolio the number of solvers, 1 if not solving with a
+     * portfolio.
+     */
+    void setPortfolio(int portfolio) {
+        this.portfolio = Math.min(portfolio, PORTFOLIO.length);
+    }
+
+    /**
+     * Set the executor of the solvers of a portfolio, which is shared by
+     * the components and by subsequent solving.
+     */
+    void setPortfolioExecutor(Executor executor) {
+        this.portfolioExecutor = executor;
+    }
+
+    /**
+     * Set the executor of the threads that solve independent components,
+     * which is shared by subsequent solving.
+     */
+    void setComponentExecutor(Executor executor) {
+        this.componentExecutor = executor;
+    }
+
+    /**
+     * @return the names of the solver configurations of the portfolio, the
+     * solver configuration first.
+     */
+    private List<String> portfolio() {
+        List<String> names = new ArrayList<>(portfolio);
+        names.add(configuration);
+        for (int i = 0; names.size() < portfolio; i++) {
+            if (!PORTFOLIO[i].equals(configuration)) {
+                names.add(PORTFOLIO[i]);
+            }
+        }
+        return names;
+    }
+
+    private static long conflicts(IPBSolver s) {
+        Number n = s.getStat().get("conflicts");
+        return (n != null) ? n.longValue() : 0;
+    }
+
+    /**
+     * Check satisfiability within the remaining budget.
+     * <p>
+     * When limited by both time and conflicts the solver is limited by
+     * time, and conflicts are checked between calls to the solver.
+     *
+     * @param maxConflicts the number of conflicts of the solver at which
+     * solving stops, otherwise 0 if not limited.
+     * @throws TimeoutException if the budget is exhausted.
+     */
+    private boolean isSatisfiable(IPBSolver s, long maxConflicts, IVecInt assumps)
+            throws TimeoutException {
+        if (Thread.currentThread().isInterrupted()) {
+            // Cancelled
+            throw new TimeoutException("Interrupted");
+        }
+        long conflicts = conflicts(s);
+        if (maxConflicts > 0 && conflicts >= maxConflicts) {
+            throw new TimeoutException("Conflict budget exhausted");
+        }
+        if (timed) {
+            long ms = (deadline - System.nanoTime()) / 1000000;
+            if (ms <= 0) {
+                throw new TimeoutException("Time budget exhausted");
+            }
+            s.setTimeoutMs(ms);
+        } else if (maxConflicts > 0) {
+            s.setTimeoutOnConflicts((int) Math.min(Integer.MAX_VALUE, maxConflicts - conflicts));
+        }
+        return s.isSatisfiable(assumps);
+    }
+
+    /**
+     * @return {@code true} if the model last solved has the least value of
+     * the objective function, otherwise {@code false} if the budget was
+     * exhausted before a model with the least value was proven.
+     */
+    boolean isOptimal() {
+        return optimal;
+    }
+
+    /**
+     * Solve, minimizing the objective function.
+     *
+     * @param assumptions the literals that are assumed to be satisfied.
+     * @return the model with the least value of the objective function, or
+     * the best model found within the budget, otherwise {@code null} if 
+     * there is no solution.
+     * @throws TimeoutException if the budget is exhausted before a model
+     * is found.
+     */
+    int[] solve(int[] assumptions) throws TimeoutException {
+        optimal = true;
+        if (s == null) {
+            s = newSolver(configuration);
+            s.setVerbose(true);
+        }
+        
+        // Fix the variables forced by the constraints, only the residual
+        // constraints are added to the solver
+        if (!up.propagate()) {
+            return null;
+        }
+        try {
+            addResidualConstraints();
+        } catch (ContradictionException ex) {
+            return null;
+        }
+
+        // The objective function over the variables that are not fixed
+        int[][] vars = new int[cs.objectiveLevels()][];
+        long[][] weights = new long[vars.length][];
+        for (int level = 0; level < vars.length; level++) {
+            int[] allVars = cs.objectiveVars(level);
+            long[] allWeights = cs.objectiveWeights(level);
+            int n = 0;
+            for (int var : allVars) {
+                if (up.value(var) == 0) {
+                    n++;
+                }
+            }
+            vars[level] = new int[n];
+            weights[level] = new long[n];
+            for (int i = 0, j = 0; i < allVars.length; i++) {
+                if (up.value(allVars[i]) == 0) {
+                    vars[level][j] = allVars[i];
+                    weights[level][j++] = allWeights[i];
+                }
+            }
+        }
+
+        IVecInt assumps = new VecInt(assumptions.length + vars.length + 1);
+        for (int lit : assumptions) {
+            int v = up.value(lit);
+            if (v < 0) {
+                // Conflicts with the fixed variables
+                return null;
+            } else if (v == 0) {
+                assumps.push(lit);
+            }
+        }
+
+        if (parallelism > 1 || portfolio > 1) {
+            int[] componentOf = new int[cs.nVars() + 1];
+            List<Component> components = decompose(assumps, vars, weights, componentOf);
+            if (components.size() > 1 || portfolio > 1) {
+                return solveComponents(components, assumps, componentOf);
+            }
+        }
+
+        if (vars.length > 0) {
+            s.setObjectiveFunction(objectiveFunction(vars[0], weights[0]));
+        }
+
+        Search search = new Search(s, maxConflicts, null) {
+            @Override
+            int selector() {
+                int selector = cs.selector();
+                s.newVar(cs.nVars());
+                return selector;
+            }
+
+            @Override
+            int[] model() {
+                return ModuleSolver.this.model();
+            }
+        };
+        int[] model = search.first(assumps);
+        if (model == null) {
+            return null;
+        }
+        model = search.minimize(model, vars, weights, assumps);
+        optimal = search.optimal;
+        return model;
+    }
+
+    /**
+     * A lexicographic linear search for the least value of the objective
+     * function.
+     * <p>
+     * Each bound is guarded by a selector variable, that is assumed when
+     * searching for a better model and negated afterwards, thus retracting
+     * the bound. The least value of a level is bound, by an assumed
+     * selector, when minimizing the subsequent levels.
+     */
+    private abstract class Search {
+
+        final IPBSolver solver;
+
+        final long maxConflicts;
+
+        // Set when the search is cancelled, otherwise null if the search
+        // cannot be cancelled
+        final AtomicBoolean cancelled;
+
+        // True if the least value of each level was found within the budget
+        boolean optimal = true;
+
+        Search(IPBSolver solver, long maxConflicts, AtomicBoolean cancelled) {
+            this.solver = solver;
+            this.maxConflicts = maxConflicts;
+            this.cancelled = cancelled;
+        }
+
+        /**
+         * Check satisfiability within the remaining budget, unless the
+         * search is cancelled.
+         *
+         * @throws TimeoutException if the budget is exhausted, or if the
+         * search is cancelled.
+         */
+        boolean isSatisfiable(IVecInt assumps) throws TimeoutException {
+            if (cancelled != null && cancelled.get()) {
+                throw new TimeoutException("Cancelled");
+            }
+            boolean sat = ModuleSolver.this.isSatisfiable(solver, maxConflicts, assumps);
+            if (cancelled != null && cancelled.get()) {
+                // The solver resets the timeout when called, thus may
+                // have been called after the timeout was expired
+                solver.expireTimeout();
+                throw new TimeoutException("Cancelled");
+            }
+            return sat;
+        }
+
+        /**
+         * Create a selector variable of the solver.
+         */
+        abstract int selector();
+
+        /**
+         * Get the model of the solver.
+         */
+        abstract int[] model();
+
+        /**
+         * Find the first model, the hinted model if it satisfies the
+         * constraints and the assumptions. If the budget is exhausted
+         * checking the hinted model the search continues without it.
+         *
+         * @return the model, otherwise {@code null} if there is no
+         * solution.
+         */
+        int[] first(IVecInt assumps) throws TimeoutException {
+            if (hint != null) {
+                IVecInt hinted = new VecInt(assumps.size() + hint.length);
+                assumps.copyTo(hinted);
+                for (int lit : hint) {
+                    if (up.value(lit) == 0) {
+                        hinted.push(lit);
+                    }
+                }
+                try {
+                    if (isSatisfiable(hinted)) {
+                        if (tracing) {
+                            trace(1, 1, "Hinted model satisfies the constraints");
+                        }
+                        return model();
+                    }
+                } catch (TimeoutException ex) {
+                    // The hint is only a starting bound, search without it
+                    // within what remains of the budget
+                    if (tracing) {
+                        trace(1, 1, "Hinted model: %s", ex.getMessage());
+                    }
+                }
+            }
+            return isSatisfiable(assumps) ? model() : null;
+        }
+
+        /**
+         * @param model a model satisfying the assumptions.
+         * @return the model with the least value, or the best model found
+         * within the budget.
+         */
+        int[] minimize(int[] model, int[][] vars, long[][] weights, IVecInt assumps) {
+            IVecInt levelSelectors = new VecInt(vars.length);
+            for (int level = 0; level < vars.length && optimal; level++) {
+                // The objective function guides the phase of decisions
+                solver.setObjectiveFunction(objectiveFunction(vars[level], weights[level]));
+
+                model = minimize(model, vars[level], weights[level], assumps);
+
+                if (level < vars.length - 1 && optimal) {
+                    try {
+                        int selector = bound(vars[level], weights[level],
+                                value(model, vars[level], weights[level]));
+                        assumps.push(selector);
+                        levelSelectors.push(selector);
+                    } catch (ContradictionException ex) {
+                        break;
+                    }
+                }
+            }
+
+            for (int i = 0; i < levelSelectors.size(); i++) {
+                assumps.pop();
+                retract(levelSelectors.get(i));
+            }
+            return model;
+        }
+
+        private int[] minimize(int[] model, int[] vars, long[] weights, IVecInt assumps) {
+            long value = value(model, vars, weights);
+            while (value > 0) {
+                boolean better;
+                try {
+                    int selector = bound(vars, weights, value - 1);
+
+                    assumps.push(selector);
+                    try {
+                        better = isSatisfiable(assumps);
+                    } catch (TimeoutException ex) {
+                        // The best model so far
+                        optimal = false;
+                        better = false;
+                    } finally {
+                        assumps.pop();
+                    }
+                    if (better) {
+                        model = model();
+                        value = value(model, vars, weights);
+                    }
+
+                    retract(selector);
+                } catch (ContradictionException ex) {
+                    better = false;
+                }
+
+                if (!better) {
+                    break;
+                }
+            }
+            return model;
+        }
+
+        /**
+         * Add a bound on the value of the objective function of a level.
+         *
+         * @return the selector, the bound is satisfied whenever the
+         * selector is not.
+         */
+        private int bound(int[] vars, long[] weights, long value) throws ContradictionException {
+            long sum = 0;
+            for (long w : weights) {
+                sum += w;
+            }
+
+            int selector = selector();
+
+            IVecInt lits = new VecInt(vars.length + 1);
+            IVec<BigInteger> coeffs = new Vec<>(vars.length + 1);
+            for (int i = 0; i < vars.length; i++) {
+                lits.push(vars[i]);
+                coeffs.push(BigInteger.valueOf(weights[i]));
+            }
+            lits.push(selector);
+            coeffs.push(BigInteger.valueOf(sum));
+
+            solver.addAtMost(lits, coeffs, BigInteger.valueOf(value + sum));
+            return selector;
+        }
+
+        private void retract(int selector) {
+            try {
+                solver.addClause(new VecInt(new int[]{-selector}));
+            } catch (ContradictionException ex) {
+                // The selector occurs only in the bound
+            }
+        }
+    }
+
+    private static ObjectiveFunction objectiveFunction(int[] vars, long[] weights) {
+        IVecInt ovars = new VecInt(vars.length);
+        IVec<BigInteger> ocoeffs = new Vec<>(vars.length);
+        for (int i = 0; i < vars.length; i++) {
+            ovars.push(vars[i]);
+            ocoeffs.push(BigInteger.valueOf(weights[i]));
+        }
+        return new ObjectiveFunction(ovars, ocoeffs);
+    }
+
+    /**
+     * Add the residual of the constraints encoded since last added, and
+     * the variables fixed since last added that may occur in constraints
+     * previously added.
+     */
+    private void addResidualConstraints() throws ContradictionException {
+        List<Constraint> constraints = cs.constraints();
+        s.newVar(cs.nVars());
+
+        for (int i = fixedAdded; i < up.nFixed(); i++) {
+            int lit = up.fixed(i);
+            if (Math.abs(lit) <= solverVars) {
+                s.addClause(new VecInt(new int[]{lit}));
+            }
+        }
+        fixedAdded = up.nFixed();
+
+        int residual = 0;
+        for (Constraint c : constraints.subList(added, constraints.size())) {
+            Constraint r = up.residual(c);
+            if (r == null) {
+                continue;
+            }
+            residual++;
+
+            // Copy, solvers may modify the literals
+            IVecInt lits = new VecInt(Arrays.copyOf(r.lits, r.lits.length));
+            if (r.degree == 1) {
+                s.addClause(lits);
+            } else {
+                s.addAtLeast(lits, r.degree);
+            }
+        }
+
+        if (tracing) {
+            trace(1, 1, "Unit propagation: %d variables fixed, %d of %d constraints are residual",
+                    up.nFixed(), residual, constraints.size() - added);
+        }
+
+        added = constraints.size();
+        solverVars = cs.nVars();
+    }
+
+    /**
+     * Residual constraints that share no variables with the constraints of
+     * other components, and the assumptions and the objective function over
+     * the variables of those constraints.
+     */
+    private static final class Component {
+
+        final List<Constraint> constraints = new ArrayList<>();
+
+        final IVecInt assumps = new VecInt();
+
+        // The variables, and weights, of each level of the objective
+        // function
+        final int[][] vars;
+
+        final long[][] weights;
+
+        // The model with the least value found, otherwise null if there is
+        // no solution
+        int[] model;
+
+        boolean optimal = true;
+
+        // The solver of the component
+        IPBSolver solver;
+
+        Component(int levels) {
+            this.vars = new int[levels][];
+            this.weights = new long[levels][];
+        }
+
+        /**
+         * Copy the constraints, assumptions and objective function.
+         */
+        Component copy() {
+            Component c = new Component(vars.length);
+            c.constraints.addAll(constraints);
+            assumps.copyTo(c.assumps);
+            System.arraycopy(vars, 0, c.vars, 0, vars.length);
+            System.arraycopy(weights, 0, c.weights, 0, weights.length);
+            return c;
+        }
+    }
+
+    /**
+     * Decompose the residual constraints into components, the union of
+     * variables that occur in the same constraint.
+     *
+     * @param componentOf receives, indexed by variable, the index of the
+     * component of the variable, otherwise -1 if the variable does not
+     * occur in a residual constraint.
+     */
+    private List<Component> decompose(IVecInt assumps, int[][] vars, long[][] weights,
+            int[] componentOf) {
+        int[] parent = new int[cs.nVars() + 1];
+        for (int var = 0; var < parent.length; var++) {
+            parent[var] = var;
+        }
+
+        List<Constraint> residuals = new ArrayList<>();
+        for (Constraint c : cs.constraints()) {
+            Constraint r = up.residual(c);
+            if (r == null) {
+                continue;
+            }
+            residuals.add(r);
+
+            int root = find(parent, Math.abs(r.lits[0]));
+            for (int lit : r.lits) {
+                parent[find(parent, Math.abs(lit))] = root;
+            }
+        }
+
+        Arrays.fill(componentOf, -1);
+        List<Component> components = new ArrayList<>();
+        for (Constraint r : residuals) {
+            int root = find(parent, Math.abs(r.lits[0]));
+            if (componentOf[root] < 0) {
+                componentOf[root] = components.size();
+                components.add(new Component(vars.length));
+            }
+            components.get(componentOf[root]).constraints.add(r);
+        }
+        for (int var = 1; var < parent.length; var++) {
+            componentOf[var] = componentOf[find(parent, var)];
+        }
+
+        for (int i = 0; i < assumps.size(); i++) {
+            int k = componentOf[Math.abs(assumps.get(i))];
+            if (k >= 0) {
+                components.get(k).assumps.push(assumps.get(i));
+            }
+        }
+        for (int level = 0; level < vars.length; level++) {
+            int[] n = new int[components.size()];
+            for (int var : vars[level]) {
+                if (componentOf[var] >= 0) {
+                    n[componentOf[var]]++;
+                }
+            }
+            for (int k = 0; k < n.length; k++) {
+                components.get(k).vars[level] = new int[n[k]];
+                components.get(k).weights[level] = new long[n[k]];
+            }
+            Arrays.fill(n, 0);
+            for (int i = 0; i < vars[level].length; i++) {
+                int k = componentOf[vars[level][i]];
+                if (k >= 0) {
+                    components.get(k).vars[level][n[k]] = vars[level][i];
+                    components.get(k).weights[level][n[k]++] = weights[level][i];
+                }
+            }
+        }
+        return components;
+    }
+
+    private static int find(int[] parent, int var) {
+        while (parent[var] != var) {
+            parent[var] = parent[parent[var]];
+            var = parent[var];
+        }
+        return var;
+    }
+
+    /**
+     * Solve the components in parallel, and merge the models of the
+     * components.
+     * <p>
+     * The calling thread, and up to one less than the parallelism threads
+     * of the component executor, take the components in turn. Thus all
+     * components are solved even if the executor has no idle thread.
+     * <p>
+     * Variables that occur in no residual constraint are satisfied only if
+     * fixed or assumed, thus not contributing to the objective function.
+     */
+    private int[] solveComponents(final List<Component> components, IVecInt assumps,
+            int[] componentOf) throws TimeoutException {
+        if (tracing) {
+            trace(1, 1, "Solving %d independent components, with %d solvers each",
+                    components.size(), portfolio);
+        }
+
+        final AtomicInteger next = new AtomicInteger();
+        final CountDownLatch solved = new CountDownLatch(components.size());
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                for (int k = next.getAndIncrement(); k < components.size(); k = next.getAndIncrement()) {
+                    Component c = components.get(k);
+                    try {
+                        if (portfolio > 1) {
+                            race(c);
+                        } else {
+                            solve(c, newSolver(configuration), null);
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        solved.countDown();
+                    }
+                }
+            }
+        };
+
+        int n = Math.min(parallelism, components.size());
+        for (int i = 1; i < n; i++) {
+            componentExecutor.execute(worker);
+        }
+        worker.run();
+        // Wait for the components taken by threads of the executor
+        try {
+            solved.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new TimeoutException("Interrupted");
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof TimeoutException) {
+            throw (TimeoutException) t;
+        } else if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        } else if (t != null) {
+            throw new RuntimeException(t);
+        }
+
+        boolean[][] sats = new boolean[components.size()][];
+        for (int k = 0; k < sats.length; k++) {
+            Component c = components.get(k);
+            if (c.model == null) {
+                return null;
+            }
+            optimal &= c.optimal;
+            sats[k] = cs.satisfied(c.model);
+        }
+
+        boolean[] assumed = new boolean[cs.nVars() + 1];
+        for (int i = 0; i < assumps.size(); i++) {
+            if (assumps.get(i) > 0) {
+                assumed[assumps.get(i)] = true;
+            }
+        }
+
+        int[] model = new int[cs.nVars()];
+        for (int var = 1; var <= model.length; var++) {
+            int v = up.value(var);
+            int k = componentOf[var];
+            boolean sat = (v > 0)
+                    || (v == 0 && (k >= 0 ? sats[k][var] : assumed[var]));
+            model[var - 1] = sat ? var : -var;
+        }
+        return model;
+    }
+
+    private static <T> T get(Future<T> f) throws TimeoutException {
+        try {
+            return f.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new TimeoutException("Interrupted");
+        } catch (ExecutionException ex) {
+            Throwable t = ex.getCause();
+            if (t instanceof TimeoutException) {
+                throw (TimeoutException) t;
+            } else if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else if (t instanceof Error) {
+                throw (Error) t;
+            }
+            throw new RuntimeException(t);
+        }
+    }
+
+    /**
+     * Race the solvers of the portfolio to solve a component.
+     * <p>
+     * The result is that of the first solver to prove the least value, or
+     * that there is no solution, otherwise the first solver to exhaust the
+     * budget with a model.
+     */
+    private void race(Component c) throws TimeoutException {
+        final List<String> names = portfolio();
+        final List<IPBSolver> solvers = new ArrayList<>(names.size());
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        for (String name : names) {
+            final IPBSolver solver = newSolver(name);
+            // Expire the timeout of a cancelled solver from within its
+            // search, since a solver resets the timeout when called
+            solver.setSearchListener(new SearchListenerAdapter<ISolverService>() {
+                @Override
+                public void beginLoop() {
+                    if (cancelled.get()) {
+                        solver.expireTimeout();
+                    }
+                }
+            });
+            solvers.add(solver);
+        }
+
+        // The solvers in order of completion
+        final BlockingQueue<Future<Component>> completed = new LinkedBlockingQueue<>();
+        for (final IPBSolver solver : solvers) {
+            final Component rc = c.copy();
+            portfolioExecutor.execute(new FutureTask<Component>(new Callable<Component>() {
+                @Override
+                public Component call() throws Exception {
+                    solve(rc, solver, cancelled);
+                    return rc;
+                }
+            }) {
+                @Override
+                protected void done() {
+                    completed.add(this);
+                }
+            });
+        }
+
+        Component best = null;
+        TimeoutException timeout = null;
+        try {
+            for (int i = 0; i < solvers.size(); i++) {
+                Component rc;
+                try {
+                    rc = get(completed.take());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new TimeoutException("Interrupted");
+                } catch (TimeoutException ex) {
+                    timeout = ex;
+                    continue;
+                }
+
+                if (rc.model == null || rc.optimal) {
+                    best = rc;
+                    if (tracing) {
+                        trace(1, 1, "Portfolio solver %s won", names.get(solvers.indexOf(rc.solver)));
+                    }
+                    break;
+                } else if (best == null) {
+                    best = rc;
+                }
+            }
+        } finally {
+            // Cancel the other solvers, those yet to be called are not
+            // called and those solving stop
+            cancelled.set(true);
+            for (IPBSolver solver : solvers) {
+                solver.expireTimeout();
+            }
+        }
+
+        if (best == null) {
+            throw timeout;
+        }
+        c.model = best.model;
+        c.optimal = best.optimal;
+    }
+
+    /**
+     * Solve a component, minimizing the objective function over the
+     * variables of the component.
+     *
+     * @param solver the solver of the component only.
+     * @param cancelled set when solving is cancelled, otherwise
+     * {@code null} if solving cannot be cancelled.
+     */
+    private void solve(Component c, final IPBSolver solver, AtomicBoolean cancelled)
+            throws TimeoutException {
+        c.solver = solver;
+        solver.newVar(cs.nVars());
+        try {
+            for (Constraint r : c.constraints) {
+                // Copy, solvers may modify the literals
+                IVecInt lits = new VecInt(Arrays.copyOf(r.lits, r.lits.length));
+                if (r.degree == 1) {
+                    solver.addClause(lits);
+                } else {
+                    solver.addAtLeast(lits, r.degree);
+                }
+            }
+        } catch (ContradictionException ex) {
+            return;
+        }
+
+        if (c.vars.length > 0) {
+            solver.setObjectiveFunction(objectiveFunction(c.vars[0], c.weights[0]));
+        }
+
+        // Selectors are variables of the solver only
+        Search search = new Search(solver, conflictBudget, cancelled) {
+            int nVars = cs.nVars();
+
+            @Override
+            int selector() {
+                solver.newVar(++nVars);
+                return nVars;
+            }
+
+            @Override
+            int[] model() {
+                return solver.model();
+            }
+        };
+        int[] model = search.first(c.assumps);
+        if (model == null) {
+            return;
+        }
+        c.model = search.minimize(model, c.vars, c.weights, c.assumps);
+        c.optimal = search.optimal;
+    }
+
+    private long value(int[] model, int[] vars, long[] weights) {
+        boolean[] sat = cs.satisfied(model);
+        long value = 0;
+        for (int i = 0; i < vars.length; i++) {
+            if (sat[vars[i]]) {
+                value += weights[i];
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Get the model of the solver, including the fixed variables.
+     */
+    private int[] model() {
+        boolean[] sat = cs.satisfied(s.model());
+        int[] model = new int[cs.nVars()];
+        for (int var = 1; var <= model.length; var++) {
+            int v = up.value(var);
+            model[var - 1] = (v > 0 || (v == 0 && sat[var])) ? var : -var;
+        }
+        return model;
+    }
+}
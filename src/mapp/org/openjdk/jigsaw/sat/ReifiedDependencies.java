@@ -29,11 +29,18 @@ import java.lang.module.ModuleIdQuery;
 import java.lang.module.ModuleInfo;
 import java.lang.module.ModuleView;
 import java.lang.module.ViewDependence;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -90,6 +97,67 @@ public class ReifiedDependencies implements ModuleGraphListener {
         modules.clear();
     }
     
+    /**
+     * Get the module ids traversed from some of the root dependences.
+     * <p>
+     * The module graph is not traversed again, the dependences obtained
+     * from traversing from all the root dependences are followed in the 
+     * same order as the traversal.
+     * 
+     * @param midqs the module id queries of the root dependences, a subset
+     * of the keys of {@link #roots}.
+     * @return the module ids, in topological order of dependency graph 
+     * traversal (depth first search) from the root dependences.
+     */
+    public Set<ModuleId> modules(Collection<ModuleIdQuery> midqs) {
+        Set<ModuleId> mids = new LinkedHashSet<>();
+        
+        // Module ids, and view/alias ids, that have been visited
+        Set<ModuleId> visited = new HashSet<>();
+        
+        Deque<Iterator<ModuleId>> stack = new ArrayDeque<>();
+        for (ModuleIdQuery midq : midqs) {
+            Set<ModuleId> rmids = roots.get(midq);
+            if (rmids == null) {
+                continue;
+            }
+            
+            // Traversed from greatest to least version
+            List<ModuleId> l = new ArrayList<>(rmids);
+            Collections.reverse(l);
+            stack.push(l.iterator());
+            
+            while (!stack.isEmpty()) {
+                Iterator<ModuleId> i = stack.peek();
+                if (!i.hasNext()) {
+                    stack.pop();
+                    continue;
+                }
+                
+                ModuleId mid = i.next();
+                ModuleInfo mi = idToView.get(mid).moduleInfo();
+                mids.add(mi.id());
+                
+                if (!visited.add(mid) 
+                        || (!mi.id().equals(mid) && !visited.add(mi.id()))) {
+                    continue;
+                }
+                
+                // Matching ids of view dependences, in declaration order,
+                // are in the order of traversal
+                List<ModuleId> dmids = new ArrayList<>();
+                for (ViewDependence vd : mi.requiresModules()) {
+                    Set<ModuleId> vdmids = dependenceToMatchingIds.get(vd);
+                    if (vdmids != null) {
+                        dmids.addAll(vdmids);
+                    }
+                }
+                stack.push(dmids.iterator());
+            }
+        }
+        return mids;
+    }
+    
     private static final Comparator<ModuleId> MODULE_ID_COMPARATOR = new Comparator<ModuleId>() {
         @Override
         public int compare(ModuleId o1, ModuleId o2) {
@@ -26,6 +26,9 @@ package org.openjdk.jigsaw.sat;
 
 import java.lang.module.ModuleIdQuery;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Resolve dependencies given a collection of module id queries.
@@ -48,4 +51,52 @@ public interface Resolver {
      * @throws ResolverException if resolving failed.
      */
     ResolverResult resolve(Collection<ModuleIdQuery> midqs) throws ResolverException;
+
+    /**
+     * Resolve dependencies for each of several collections of module id
+     * queries.
+     * <p>
+     * Each collection is resolved independently of the others, as if by
+     * {@link #resolve(java.util.Collection)}, but work common to the 
+     * collections, such as traversing the module graph, may be shared.
+     *
+     * @param midqss the collections of module id queries that are root
+     * dependences.
+     *
+     * @return the outcomes of resolving, in the same order as the 
+     * collections of module id queries. An outcome is either the result
+     * of resolving, if successful, or the failure to resolve.
+     */
+    List<ResolverOutcome> resolveAll(List<Collection<ModuleIdQuery>> midqss);
+
+    /**
+     * Check whether dependencies can be resolved.
+     * <p>
+     * Versions are not preferred, and service provider modules are not
+     * resolved, thus the first solution found is a witness that the 
+     * dependencies can be resolved. The witness is not 
+     * {@link ResolverResult#isOptimal() optimal}, unless there are no 
+     * choices.
+     *
+     * @param midqs the collection of module id queries that are root
+     * dependences.
+     *
+     * @return the outcome, either a witness, the modules of one solution,
+     * if the dependencies can be resolved, or the failure to resolve.
+     */
+    ResolverOutcome checkResolvable(Collection<ModuleIdQuery> midqs);
+
+    /**
+     * Resolve dependencies asynchronously.
+     *
+     * @param midqs the collection of module id queries that are root
+     * dependences.
+     * @param executor the executor that resolves.
+     *
+     * @return the future result of resolving. If resolving failed the 
+     * cause of the {@link java.util.concurrent.ExecutionException} is a
+     * {@link ResolverException}.
+     * @see #resolve(java.util.Collection)
+     */
+    CompletableFuture<ResolverResult> resolveAsync(Collection<ModuleIdQuery> midqs, Executor executor);
 }
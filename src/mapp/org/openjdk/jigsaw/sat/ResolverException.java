@@ -24,6 +24,11 @@
  */
 package org.openjdk.jigsaw.sat;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 /**
  * An unsuccessful result of resolving.
  *
@@ -33,14 +38,38 @@ package org.openjdk.jigsaw.sat;
 // ## Report resolver warnings: errors for optional and service provider dependencies
 public class ResolverException extends RuntimeException {
 
+    private final Set<String> why;
+
     public ResolverException() {
+        this.why = Collections.emptySet();
     }
 
     public ResolverException(String message) {
         super(message);
+        this.why = Collections.emptySet();
     }
 
     public ResolverException(Throwable cause) {
         super(cause);
+        this.why = Collections.emptySet();
+    }
+
+    /**
+     * @param why the descriptions of the conflicting constraints that
+     * explain why resolving failed.
+     */
+    public ResolverException(Collection<String> why) {
+        super(why.toString());
+        this.why = Collections.unmodifiableSet(new LinkedHashSet<>(why));
+    }
+
+    /**
+     * 
+     * @return the unmodifiable set of descriptions of the conflicting 
+     * constraints that explain why resolving failed, otherwise an empty set
+     * if there is no explanation.
+     */
+    public Set<String> why() {
+        return why;
     }
 }
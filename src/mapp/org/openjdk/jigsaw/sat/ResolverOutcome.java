@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.sat;
+
+/**
+ * The outcome of resolving one of several collections of root module id 
+ * queries, either a result or a failure.
+ *
+ * @see Resolver#resolveAll(java.util.List)
+ */
+public final class ResolverOutcome {
+
+    private final ResolverResult rr;
+
+    private final ResolverException ex;
+
+    /**
+     * 
+     * @param rr the successful result of resolving.
+     */
+    public ResolverOutcome(ResolverResult rr) {
+        if (rr == null) {
+            throw new NullPointerException();
+        }
+        this.rr = rr;
+        this.ex = null;
+    }
+
+    /**
+     * 
+     * @param ex the failure to resolve.
+     */
+    public ResolverOutcome(ResolverException ex) {
+        if (ex == null) {
+            throw new NullPointerException();
+        }
+        this.rr = null;
+        this.ex = ex;
+    }
+
+    /**
+     * @return {@code true} if resolving was successful.
+     */
+    public boolean isResolved() {
+        return rr != null;
+    }
+
+    /**
+     * @return the result of resolving, if successful.
+     * @throws ResolverException if resolving failed.
+     */
+    public ResolverResult result() throws ResolverException {
+        if (ex != null) {
+            throw ex;
+        }
+        return rr;
+    }
+
+    /**
+     * @return the failure to resolve, otherwise {@code null} if resolving
+     * was successful.
+     */
+    public ResolverException exception() {
+        return ex;
+    }
+
+    @Override
+    public String toString() {
+        return (rr != null) 
+                ? rr.resolvedModuleIds().toString() 
+                : "Failed: " + ex.getMessage();
+    }
+}
@@ -40,4 +40,13 @@ public interface ResolverResult {
      */
     // ## return Map<ModuleId, ModuleInfo> ?
     Set<ModuleId> resolvedModuleIds();
+
+    /**
+     *
+     * @return {@code true} if the resolved module ids are the best solution, 
+     * otherwise {@code false} if the resolver's budget was exhausted and 
+     * the resolved module ids are the best solution found within the 
+     * budget.
+     */
+    boolean isOptimal();
 }
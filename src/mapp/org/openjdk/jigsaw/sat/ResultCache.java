@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.sat;
+
+import java.lang.module.ModuleIdQuery;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A cache of the results of resolving, keyed by the root queries and the
+ * fingerprint of the stamp of the library.
+ * <p>
+ * Failures to resolve, when there is no solution, are also cached with the
+ * explanation, if any, of why resolving failed.
+ * <p>
+ * The results are cleared when resolving with a different fingerprint, 
+ * since modules have been installed in, removed from, or installed again
+ * in, the library.
+ *
+ * @see CatalogStamp
+ */
+final class ResultCache {
+
+    /**
+     * The fingerprint and the root queries, without duplicates and in order
+     * of declaration since the order of resolved modules depends on the 
+     * order of root queries.
+     */
+    private static final class Key {
+
+        final long fingerprint;
+
+        final List<ModuleIdQuery> midqs;
+
+        Key(long fingerprint, Collection<ModuleIdQuery> midqs) {
+            this.fingerprint = fingerprint;
+            this.midqs = new ArrayList<>(new LinkedHashSet<>(midqs));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return fingerprint == k.fingerprint && midqs.equals(k.midqs);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (fingerprint ^ (fingerprint >>> 32)) + midqs.hashCode();
+        }
+    }
+
+    /**
+     * A failure to resolve.
+     */
+    private static final class Failure {
+
+        final Set<String> why;
+
+        Failure(Set<String> why) {
+            this.why = why;
+        }
+    }
+
+    // Key to ResolverResult or Failure
+    private final LruCache<Key, Object> results;
+
+    // The fingerprint of the stamp of the library of the results
+    private long fingerprint;
+
+    /**
+     * @param size the maximum number of results.
+     */
+    ResultCache(int size) {
+        this.results = new LruCache<>(size);
+    }
+
+    /**
+     * Clear the results if the fingerprint differs, the results can no 
+     * longer be obtained.
+     */
+    private synchronized void validate(long fingerprint) {
+        if (this.fingerprint != fingerprint) {
+            results.clear();
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * @return the result, otherwise {@code null} if there is no result for
+     * the root queries.
+     * @throws ResolverException if resolving the root queries failed.
+     */
+    ResolverResult get(long fingerprint, Collection<ModuleIdQuery> midqs) throws ResolverException {
+        validate(fingerprint);
+        Object o = results.get(new Key(fingerprint, midqs));
+        if (o instanceof Failure) {
+            Set<String> why = ((Failure) o).why;
+            throw why.isEmpty() ? new ResolverException() : new ResolverException(why);
+        }
+        return (ResolverResult) o;
+    }
+
+    void put(long fingerprint, Collection<ModuleIdQuery> midqs, ResolverResult rr) {
+        validate(fingerprint);
+        results.put(new Key(fingerprint, midqs), rr);
+    }
+
+    /**
+     * Cache a failure to resolve because there is no solution.
+     */
+    void putFailure(long fingerprint, Collection<ModuleIdQuery> midqs, ResolverException ex) {
+        validate(fingerprint);
+        results.put(new Key(fingerprint, midqs), new Failure(ex.why()));
+    }
+
+    void clear() {
+        results.clear();
+    }
+}
@@ -24,6 +24,7 @@
  */
 package org.openjdk.jigsaw.sat;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.module.Dependence.Modifier;
 import java.lang.module.ModuleId;
@@ -31,77 +32,1103 @@ import java.lang.module.ModuleIdQuery;
 import java.lang.module.ModuleInfo;
 import java.lang.module.ModuleSystem;
 import java.lang.module.ModuleView;
+import java.lang.module.ServiceDependence;
 import java.lang.module.ViewDependence;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import org.openjdk.jigsaw.JigsawModuleSystem;
 import org.openjdk.jigsaw.Library;
+import org.openjdk.jigsaw.sat.ModuleConstraints.Label;
 import static org.openjdk.jigsaw.sat.SatTrace.*;
-import org.sat4j.pb.IPBSolver;
-import org.sat4j.pb.OptToPBSATAdapter;
-import org.sat4j.pb.PseudoOptDecorator;
+import org.sat4j.core.VecInt;
 import org.sat4j.pb.SolverFactory;
-import org.sat4j.pb.tools.DependencyHelper;
-import org.sat4j.pb.tools.StringNegator;
-import org.sat4j.pb.tools.WeightedObject;
+import org.sat4j.pb.tools.XplainPB;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.IConstr;
+import org.sat4j.specs.TimeoutException;
 
-// ## Change so not mapping to module id strings
 public class Sat4JResolver implements Resolver {
     
+    /**
+     * The default maximum number of cached results of resolving.
+     */
+    public static final int DEFAULT_RESULT_CACHE_SIZE = 256;
+    
     private final ModuleSystem ms = JigsawModuleSystem.instance();
     
     private final Library l;
     
+    // Module info read from the library
+    private final CachingCatalog cat;
+    
     private final ModuleGraphTraverser t;
     
     private final ServiceDependences sds;
     
+    // The directory in which the library is located, otherwise null
+    private final File libraryDir;
+    
+    // The file in which the snapshot of the module graph is stored, 
+    // otherwise null
+    private final File snapshotFile;
+    
+    // Use the snapshot of the module graph
+    private volatile boolean useSnapshot = true;
+    
+    // The snapshot of the module graph, opened when resolving and passed
+    // to each traversal
+    private volatile ModuleGraphSnapshot snapshot;
+    
+    // Cache of results of resolving, otherwise null
+    private volatile ResultCache results = new ResultCache(DEFAULT_RESULT_CACHE_SIZE);
+    
+    // Time budget, in milliseconds, to explain why resolving failed
+    private volatile long explanationTimeout = 10000;
+    
+    // Resolve service provider modules in the same phase as the application
+    private volatile boolean singlePhase;
+    
+    // The number of threads that resolve collections of module id queries
+    private volatile int batchParallelism = 1;
+    
+    // Time budget, in milliseconds, of solving, otherwise 0 if not limited
+    private volatile long solverTimeout;
+    
+    // Conflict budget of solving, otherwise 0 if not limited
+    private volatile int solverConflicts;
+    
+    // The number of threads that solve independent components of the
+    // constraints
+    private volatile int solverParallelism = 1;
+    
+    // The number of solvers that race to solve, 1 if not solving with a
+    // portfolio
+    private volatile int solverPortfolio = 1;
+    
+    // The policy selecting the strategy of solving, otherwise null if
+    // the strategy is fixed
+    private volatile SolverPolicy solverPolicy;
+    
+    // The executor that solves when resolving asynchronously, otherwise
+    // null for the default executor
+    private volatile Executor solverExecutor;
+    
+    // The executor of the solvers of a portfolio, otherwise null for the
+    // default executor
+    private volatile Executor portfolioExecutor;
+    
     public Sat4JResolver(Library l) {
+        this(l, new CachingCatalog(l));
+    }
+    
+    /**
+     * 
+     * @param l the library from which modules are resolved.
+     * @param cat the catalog that caches module info read from the library,
+     * which may be shared with other resolvers of the same library.
+     */
+    public Sat4JResolver(Library l, CachingCatalog cat) {
+        if (cat.catalog() != l) {
+            throw new IllegalArgumentException();
+        }
+        
         this.l = l;
-        this.t = new ModuleGraphTraverser(l);
-        this.sds = new ServiceDependences(l);
+        this.cat = cat;
+        this.t = new ModuleGraphTraverser(cat);
+        this.libraryDir = CatalogStamp.directory(l);
+        this.sds = new ServiceDependences(cat, libraryFile("%sat-service-index"));
+        this.snapshotFile = libraryFile("%sat-module-graph");
+    }
+    
+    /**
+     * Get a file, in the library directory, in which to store an index 
+     * of the library.
+     *
+     * @return the file, otherwise {@code null} if the library is not 
+     * located in a directory.
+     */
+    private File libraryFile(String name) {
+        return (libraryDir != null) ? new File(libraryDir, name) : null;
+    }
+    
+    /**
+     * Set whether a snapshot of the module graph of the library is used.
+     * <p>
+     * If the library is located in a directory a snapshot of the module 
+     * graph is compiled, and stored in the library directory, when first
+     * resolving. The snapshot is memory mapped when subsequently resolving
+     * and compiled again if modules have since been installed in, or 
+     * removed from, the library. Module ids matching root queries and view
+     * dependences are obtained from the snapshot rather than found in the
+     * library.
+     * <p>
+     * By default the snapshot is used.
+     *
+     * @param useSnapshot {@code true} to use the snapshot.
+     */
+    public void setUseModuleGraphSnapshot(boolean useSnapshot) {
+        this.useSnapshot = useSnapshot;
+    }
+    
+    /**
+     * Set the time budget to explain why resolving failed.
+     * <p>
+     * Resolving first solves without tracking explanations. If there is 
+     * no solution the same problem is solved again, within the time budget,
+     * tracking explanations so that the {@link ResolverException} may
+     * describe the conflicting constraints.
+     *
+     * @param ms the time budget in milliseconds, a value of 0 disables
+     * explanations.
+     */
+    public void setExplanationTimeout(long ms) {
+        if (ms < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.explanationTimeout = ms;
+        clearResults();
+    }
+    
+    /**
+     * Set the time budget of solving.
+     * <p>
+     * The solver minimizes the objective function, preferring newer versions
+     * and present optional modules, by searching for successively better
+     * solutions. If the budget is exhausted once a solution is found the 
+     * best solution so far is the result, and the result is not 
+     * {@link ResolverResult#isOptimal() optimal}. If the budget is exhausted
+     * before a solution is found resolving fails with a 
+     * {@link ResolverException} whose cause is a 
+     * {@link TimeoutException}.
+     * <p>
+     * The budget is of each call to resolve and, when resolving several 
+     * collections of module id queries, of each collection. Results that
+     * are not optimal are not cached.
+     *
+     * @param ms the time budget in milliseconds, a value of 0 if solving
+     * is not limited.
+     * @throws IllegalArgumentException if {@code ms} is negative.
+     */
+    public void setSolverTimeout(long ms) {
+        if (ms < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.solverTimeout = ms;
+    }
+    
+    /**
+     * Set the conflict budget of solving, the number of conflicts the solver
+     * may encounter.
+     * <p>
+     * If a time budget is also set the conflict budget is checked between
+     * successive solutions.
+     *
+     * @param conflicts the conflict budget, a value of 0 if solving is not 
+     * limited.
+     * @throws IllegalArgumentException if {@code conflicts} is negative.
+     * @see #setSolverTimeout(long) 
+     */
+    public void setSolverConflictBudget(int conflicts) {
+        if (conflicts < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.solverConflicts = conflicts;
+    }
+    
+    /**
+     * Set whether service provider modules are resolved in the same phase
+     * as the application modules.
+     * <p>
+     * By default the application modules are resolved first, then service 
+     * provider modules of the resolved modules are resolved in subsequent
+     * phases until no further service provider modules are found.
+     * <p>
+     * When resolved in the same phase the service dependences of all modules
+     * in the module graph are encoded as optional dependences on the service 
+     * provider modules, and all modules are resolved with one call to the
+     * solver. Consequently service provider modules may influence the 
+     * versions of application modules that are resolved.
+     *
+     * @param singlePhase {@code true} to resolve service provider modules in 
+     * the same phase as the application modules.
+     */
+    public void setSinglePhase(boolean singlePhase) {
+        this.singlePhase = singlePhase;
+        clearResults();
+    }
+    
+    /**
+     * Set the maximum number of cached results of resolving.
+     * <p>
+     * Results are cached by the root queries, in order of declaration and
+     * without duplicates, and the fingerprint of the module ids in the 
+     * library and, if the library is located in a directory, of the
+     * modification times of the modules. Results are no longer returned 
+     * once modules have been installed in, or removed from, the library.
+     * <p>
+     * Failures to resolve, when there is no solution, are also cached. A
+     * cached failure is thrown as a {@link ResolverException} with the
+     * same explanation of why resolving failed.
+     *
+     * @param size the maximum number of cached results, 0 if results are 
+     * not cached.
+     * @throws IllegalArgumentException if {@code size} is negative.
+     */
+    public void setResultCacheSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.results = (size > 0) ? new ResultCache(size) : null;
+    }
+    
+    /**
+     * Set the number of threads that resolve collections of module id
+     * queries.
+     * <p>
+     * When resolving several collections of module id queries the 
+     * collections are partitioned into groups, no more than the number of
+     * threads. The module graph is traversed from the union of the root 
+     * dependences of each group, and the constraints are encoded, once for
+     * the group. Each collection of the group is then solved by assuming 
+     * its root dependences. Groups are resolved in parallel, by the calling
+     * thread and threads of the solver executor.
+     * <p>
+     * By default there is one thread, thus one group.
+     *
+     * @param parallelism the number of threads.
+     * @throws IllegalArgumentException if {@code parallelism} is less than 1.
+     * @see #resolveAll(java.util.List)
+     */
+    public void setBatchParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.batchParallelism = parallelism;
+    }
+    
+    /**
+     * Set the number of threads that solve independent components of the
+     * constraints.
+     * <p>
+     * Once unit propagated, the residual constraints are decomposed into
+     * components that share no variables, such as the dependences of 
+     * unrelated root modules. Each component is solved, with its own 
+     * solver, in parallel and the models are merged. A component that is
+     * unsatisfiable fails resolving, a budget of solving applies to each
+     * component. Constraints that form one component are solved 
+     * incrementally, as when not solved in parallel.
+     * <p>
+     * By default there is one thread, thus the constraints are not 
+     * decomposed.
+     *
+     * @param parallelism the number of threads.
+     * @throws IllegalArgumentException if {@code parallelism} is less than 1.
+     */
+    public void setSolverParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.solverParallelism = parallelism;
+    }
+    
+    /**
+     * Set the number of threads that race solvers of different 
+     * configurations, a portfolio, to solve the constraints.
+     * <p>
+     * Solver configurations differ in learning, restarts and inference, 
+     * and suit different module graphs. Each solver solves the same 
+     * residual constraints, and the first solver to prove the best 
+     * solution, or that there is no solution, wins and the other solvers
+     * are cancelled. If independent components of the constraints are 
+     * solved in parallel each component is raced.
+     * <p>
+     * By default there is one thread, thus one solver. The number of 
+     * solvers is limited by the number of configurations.
+     *
+     * @param cores the number of threads.
+     * @throws IllegalArgumentException if {@code cores} is less than 1.
+     * @see #setSolverParallelism(int) 
+     */
+    public void setSolverPortfolio(int cores) {
+        if (cores < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.solverPortfolio = cores;
+    }
+    
+    /**
+     * Set the policy that selects the strategy of solving.
+     * <p>
+     * Once the module graph is traversed and the constraints are encoded,
+     * features such as the number of modules, versions and constraints are
+     * computed and the policy selects a solver configuration, whether 
+     * independent components of the constraints are solved in parallel, 
+     * and whether a portfolio of solvers is raced. The strategy is selected
+     * once when resolving, and applies to all phases. The policy records 
+     * the selections and the time spent solving.
+     * <p>
+     * By default there is no policy, and the strategy is fixed by the 
+     * solver parallelism and portfolio.
+     *
+     * @param policy the policy, otherwise {@code null} if the strategy is 
+     * fixed.
+     * @see SolverPolicy#defaultPolicy() 
+     * @see #setSolverParallelism(int) 
+     * @see #setSolverPortfolio(int) 
+     */
+    public void setSolverPolicy(SolverPolicy policy) {
+        this.solverPolicy = policy;
+    }
+    
+    /**
+     * Set the executor that solves when resolving asynchronously, and that
+     * resolves groups of collections of module id queries in parallel.
+     * <p>
+     * By default the executor has a thread per processor.
+     *
+     * @param executor the executor, otherwise {@code null} for the default
+     * executor.
+     * @see #resolveAsync(java.util.Collection, java.util.concurrent.Executor) 
+     */
+    public void setSolverExecutor(Executor executor) {
+        this.solverExecutor = executor;
+    }
+    
+    private Executor solverExecutor() {
+        Executor e = solverExecutor;
+        return (e != null) ? e : DefaultExecutors.SOLVER;
+    }
+    
+    /**
+     * Set the executor of the solvers of a portfolio.
+     * <p>
+     * By default the executor is shared by all resolvers, and has a thread
+     * per solver racing, reused when idle.
+     *
+     * @param executor the executor, otherwise {@code null} for the default
+     * executor.
+     * @see #setSolverPortfolio(int) 
+     */
+    public void setSolverPortfolioExecutor(Executor executor) {
+        this.portfolioExecutor = executor;
+    }
+    
+    private Executor portfolioExecutor() {
+        Executor e = portfolioExecutor;
+        return (e != null) ? e : DefaultExecutors.PORTFOLIO;
+    }
+    
+    private void clearResults() {
+        ResultCache rc = results;
+        if (rc != null) {
+            rc.clear();
+        }
+    }
+    
+    /**
+     * Set the number of threads that explore the module graph, reading 
+     * from the library, ahead of the depth first traversal.
+     *
+     * @param parallelism the number of threads.
+     * @see ModuleGraphTraverser#setParallelism(int)
+     */
+    public void setTraversalParallelism(int parallelism) {
+        t.setParallelism(parallelism);
+    }
+    
+    /**
+     * Set the number of threads that read module info when indexing the
+     * service provider modules of the library.
+     *
+     * @param parallelism the number of threads.
+     * @see ServiceDependences#setParallelism(int)
+     */
+    public void setServiceIndexParallelism(int parallelism) {
+        sds.setParallelism(parallelism);
     }
     
     @Override
     public ResolverResult resolve(Collection<ModuleIdQuery> midqs) throws ResolverException {
+        return resolve(midqs, null);
+    }
+    
+    /**
+     * Resolve dependencies, hinted by a previous result.
+     * <p>
+     * When resolving again after the library has changed the result is 
+     * often close to the previous result. The modules of the hint set the
+     * initial phase of the solver's decisions, the modules being resolved 
+     * and other modules not. If the modules of the hint are a solution, 
+     * the hint bounds the search for the best solution. The hint does not
+     * change the result, only the time to find it.
+     *
+     * @param midqs the collection of module id queries that are root
+     * dependences.
+     * @param hint the previous result, otherwise {@code null} if not 
+     * hinted.
+     * @return the result of resolving, if successful.
+     * @throws ResolverException if resolving failed.
+     * @see #resolve(java.util.Collection) 
+     */
+    public ResolverResult resolve(Collection<ModuleIdQuery> midqs, ResolverResult hint) 
+            throws ResolverException {
         try {
             if (tracing) {
                 trace(1, "Resolving module queries %s", midqs);
             }
             
-            return _resolve(midqs);
+            return _resolve(midqs, traverse(midqs), hint);
         } catch (ResolverException ex) {
             throw ex;
+        } catch (TimeoutException ex) {
+            // The budget is exhausted before a solution is found
+            throw new ResolverException(ex);
         } catch (Exception ex) {
             ex.printStackTrace();
             throw new ResolverException(ex);
         }
     }
     
-    private ResolverResult _resolve(Collection<ModuleIdQuery> midqs) throws Exception {
-        final Set<ModuleId> _mids = new LinkedHashSet<>();
-        ReifiedDependencies rds = new ReifiedDependencies();
+    @Override
+    public ResolverOutcome checkResolvable(Collection<ModuleIdQuery> midqs) {
+        try {
+            if (tracing) {
+                trace(1, "Checking module queries %s are resolvable", midqs);
+            }
+            
+            Traversal tr = traverse(midqs);
+            if (tr.cached != null) {
+                return new ResolverOutcome(tr.cached);
+            }
+            
+            try {
+                return new ResolverOutcome(_checkResolvable(midqs, tr.rds, tr.snapshot,
+                        tr.providers));
+            } catch (ResolverException ex) {
+                // There is no solution, regardless of preferences
+                if (tr.rc != null) {
+                    tr.rc.putFailure(tr.fingerprint, midqs, ex);
+                }
+                throw ex;
+            }
+        } catch (ResolverException ex) {
+            return new ResolverOutcome(ex);
+        } catch (TimeoutException ex) {
+            // The budget is exhausted before a solution is found
+            return new ResolverOutcome(new ResolverException(ex));
+        } catch (Exception ex) {
+            return new ResolverOutcome(new ResolverException(ex));
+        }
+    }
+    
+    /**
+     * Resolve the application modules, without the objective function and
+     * without the phases of service provider modules, stopping at the first
+     * solution.
+     */
+    private ResolverResult _checkResolvable(Collection<ModuleIdQuery> midqs, 
+            ReifiedDependencies rds, 
+            ModuleGraphSnapshot mgs,
+            Map<String, Set<ModuleId>> providers) throws Exception {
+        ResolverResult rr = providers.isEmpty()
+                ? resolveWithoutChoices(rds)
+                : null;
+        if (rr == null) {
+            State st = newState(mgs);
+            st.feasible = true;
+            rr = _resolve(rds, st, Collections.EMPTY_SET, false, midqs,
+                    providers, 0);
+        }
         
         if (tracing) {
-            trace(1, "Phase 0: resolving application");
+            trace(1, "Resolvable, witness: %s", rr.resolvedModuleIds());
+        }
+        return rr;
+    }
+    
+    /**
+     * Resolve dependencies asynchronously.
+     * <p>
+     * The module graph is traversed by a default executor that executes 
+     * each traversal in a thread of its own, since traversing is bound by 
+     * reading from the library.
+     *
+     * @see #resolveAsync(java.util.Collection, java.util.concurrent.Executor) 
+     */
+    public CompletableFuture<ResolverResult> resolveAsync(Collection<ModuleIdQuery> midqs) {
+        return resolveAsync(midqs, DefaultExecutors.TRAVERSAL);
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Resolving is performed in two stages. The module graph is traversed 
+     * by the given executor, then the constraints are solved by the solver
+     * executor, so that the number of threads solving, which is bound by 
+     * computation, may be limited independently of the number of threads 
+     * traversing. A cached result is returned without solving.
+     * 
+     * @see #setSolverExecutor(java.util.concurrent.Executor) 
+     */
+    @Override
+    public CompletableFuture<ResolverResult> resolveAsync(
+            final Collection<ModuleIdQuery> midqs, Executor executor) {
+        return CompletableFuture.supplyAsync(new Supplier<Traversal>() {
+            @Override
+            public Traversal get() {
+                if (tracing) {
+                    trace(1, "Resolving module queries %s asynchronously", midqs);
+                }
+
+                try {
+                    return traverse(midqs);
+                } catch (ResolverException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    throw new ResolverException(ex);
+                }
+            }
+        }, executor).thenCompose(new Function<Traversal, CompletableFuture<ResolverResult>>() {
+            @Override
+            public CompletableFuture<ResolverResult> apply(final Traversal tr) {
+                if (tr.cached != null) {
+                    return CompletableFuture.completedFuture(tr.cached);
+                }
+
+                return CompletableFuture.supplyAsync(new Supplier<ResolverResult>() {
+                    @Override
+                    public ResolverResult get() {
+                        try {
+                            return _resolve(midqs, tr, null);
+                        } catch (ResolverException ex) {
+                            throw ex;
+                        } catch (Exception ex) {
+                            throw new ResolverException(ex);
+                        }
+                    }
+                }, solverExecutor());
+            }
+        });
+    }
+    
+    /**
+     * The default executors of asynchronous resolving, and of solvers of a
+     * portfolio, and the executor of threads solving independent components,
+     * whose threads are daemon threads.
+     */
+    private static final class DefaultExecutors {
+
+        // A thread per traversal, reused when idle
+        static final ExecutorService TRAVERSAL = Executors.newCachedThreadPool(
+                new DaemonThreadFactory("sat-resolver-traversal-"));
+
+        // A thread per processor
+        static final ExecutorService SOLVER = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors(),
+                new DaemonThreadFactory("sat-resolver-solver-"));
+
+        // A thread per solver racing, reused when idle
+        static final ExecutorService PORTFOLIO = Executors.newCachedThreadPool(
+                new DaemonThreadFactory("sat-resolver-portfolio-"));
+
+        // A thread per component solved in parallel, reused when idle
+        static final ExecutorService COMPONENT = Executors.newCachedThreadPool(
+                new DaemonThreadFactory("sat-resolver-component-"));
+    }
+    
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+
+        private final AtomicInteger n = new AtomicInteger();
+
+        DaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, prefix + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+    
+    @Override
+    public List<ResolverOutcome> resolveAll(List<Collection<ModuleIdQuery>> midqss) {
+        if (tracing) {
+            trace(1, "Resolving collections of module queries %s", midqss);
+        }
+        
+        ResolverOutcome[] outcomes = new ResolverOutcome[midqss.size()];
+        // Indexes of the collections that are not cached
+        List<Integer> indexes = new ArrayList<>();
+        try {
+            ResultCache rc = results;
+            
+            // The stamp of the library, obtained once for all collections
+            CatalogStamp stamp = CatalogStamp.of(cat, libraryDir);
+            cat.refresh(stamp);
+            long fingerprint = stamp.fingerprint;
+            
+            for (int i = 0; i < outcomes.length; i++) {
+                if (rc != null) {
+                    try {
+                        ResolverResult rr = rc.get(fingerprint, midqss.get(i));
+                        if (rr != null) {
+                            outcomes[i] = new ResolverOutcome(rr);
+                            continue;
+                        }
+                    } catch (ResolverException ex) {
+                        // There was no solution
+                        outcomes[i] = new ResolverOutcome(ex);
+                        continue;
+                    }
+                }
+                indexes.add(i);
+            }
+            if (indexes.isEmpty()) {
+                return Arrays.asList(outcomes);
+            }
+            
+            final ModuleGraphSnapshot mgs = openSnapshot(stamp);
+            sds.refresh(stamp);
+            
+            // Partition the collections into groups, each group is 
+            // traversed and encoded once
+            int parallelism = Math.min(batchParallelism, indexes.size());
+            final List<List<Collection<ModuleIdQuery>>> groups = new ArrayList<>(parallelism);
+            for (int g = 0; g < parallelism; g++) {
+                groups.add(new ArrayList<Collection<ModuleIdQuery>>());
+            }
+            for (int j = 0; j < indexes.size(); j++) {
+                groups.get(j % parallelism).add(midqss.get(indexes.get(j)));
+            }
+            
+            // The calling thread, and up to one less than the parallelism 
+            // threads of the solver executor, take the groups in turn. Thus
+            // all groups are resolved even if the executor has no idle thread
+            final AtomicReferenceArray<List<ResolverOutcome>> groupOutcomes = 
+                    new AtomicReferenceArray<>(parallelism);
+            final AtomicInteger next = new AtomicInteger();
+            final CountDownLatch resolved = new CountDownLatch(parallelism);
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            Runnable worker = new Runnable() {
+                @Override
+                public void run() {
+                    for (int g = next.getAndIncrement(); g < groups.size(); g = next.getAndIncrement()) {
+                        try {
+                            groupOutcomes.set(g, _resolveAll(groups.get(g), mgs));
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        } finally {
+                            resolved.countDown();
+                        }
+                    }
+                }
+            };
+            
+            Executor executor = solverExecutor();
+            for (int g = 1; g < parallelism; g++) {
+                executor.execute(worker);
+            }
+            worker.run();
+            // Wait for the groups taken by threads of the executor
+            resolved.await();
+            
+            Throwable t = failure.get();
+            if (t instanceof Error) {
+                throw (Error) t;
+            } else if (t != null) {
+                throw (Exception) t;
+            }
+            
+            for (int j = 0; j < indexes.size(); j++) {
+                int i = indexes.get(j);
+                ResolverOutcome o = groupOutcomes.get(j % parallelism).get(j / parallelism);
+                outcomes[i] = o;
+                
+                if (rc != null) {
+                    if (o.isResolved()) {
+                        if (o.result().isOptimal()) {
+                            rc.put(fingerprint, midqss.get(i), o.result());
+                        }
+                    } else if (!(o.exception().getCause() instanceof TimeoutException)) {
+                        rc.putFailure(fingerprint, midqss.get(i), o.exception());
+                    }
+                }
+            }
+        } catch (Exception ex) {
+            // Resolving failed for all collections that are not cached
+            ResolverException rex = (ex instanceof ResolverException)
+                    ? (ResolverException) ex
+                    : new ResolverException(ex);
+            for (int i : indexes) {
+                if (outcomes[i] == null) {
+                    outcomes[i] = new ResolverOutcome(rex);
+                }
+            }
+        }
+        return Arrays.asList(outcomes);
+    }
+    
+    private boolean isSnapshotted() {
+        return useSnapshot && snapshotFile != null;
+    }
+    
+    /**
+     * Open the snapshot of the module graph, reusing the previously opened
+     * snapshot if current.
+     * 
+     * @return the snapshot, otherwise {@code null} if not snapshotted.
+     */
+    private synchronized ModuleGraphSnapshot openSnapshot(CatalogStamp stamp) 
+            throws IOException {
+        if (!isSnapshotted()) {
+            return null;
+        }
+        
+        ModuleGraphSnapshot mgs = ModuleGraphSnapshot.open(cat, stamp, 
+                snapshotFile, snapshot);
+        snapshot = mgs;
+        return mgs;
+    }
+    
+    /**
+     * State shared by the application phase and the service provider phases
+     * of resolving, and by collections of module id queries resolved 
+     * together.
+     */
+    private static class State {
+
+        // Constraints, and the solver, retained between phases
+        final ModuleConstraints cs = new ModuleConstraints();
+
+        final ModuleSolver solver = new ModuleSolver(cs);
+
+        // Modules whose dependences are encoded
+        final Set<ModuleId> encodedModules = new HashSet<>();
+
+        // Views and aliases that are encoded
+        final Set<ModuleId> encodedViewOrAliasIds = new HashSet<>();
+
+        // Not permitted module views that are encoded
+        final Map<ModuleId, Set<ModuleId>> encodedNotPermitted = new HashMap<>();
+
+        // Module names with optional dependences
+        final Set<String> optionals = new HashSet<>();
+
+        // Module name to the number of literals of the encoded
+        // "Only one version" constraint
+        final Map<String, Integer> encodedVersions = new HashMap<>();
+        
+        // The policy that selected the strategy of solving, otherwise null
+        SolverPolicy policy;
+        
+        // The rule of the policy that selected the strategy
+        int rule;
+        
+        // True if checking that there is a solution, without preferences
+        boolean feasible;
+        
+        // The modules of the previous result, otherwise null if not hinted
+        Set<ModuleId> hint;
+
+        // The snapshot of the module graph traversed, otherwise null
+        ModuleGraphSnapshot snapshot;
+
+        boolean encodeModule(ModuleId mid) {
+            return encodedModules.add(mid);
+        }
+
+        boolean encodeViewOrAlias(ModuleId vamid) {
+            return encodedViewOrAliasIds.add(vamid);
+        }
+
+        boolean encodeNotPermitted(ModuleId mvid, ModuleId mid) {
+            Set<ModuleId> mids = encodedNotPermitted.get(mvid);
+            if (mids == null) {
+                mids = new HashSet<>();
+                encodedNotPermitted.put(mvid, mids);
+            }
+            return mids.add(mid);
+        }
+
+        boolean encodeVersions(String moduleName, int nLits) {
+            Integer n = encodedVersions.put(moduleName, nLits);
+            return n == null || n != nLits;
+        }
+    }
+
+    /**
+     * The module graph traversed from root dependences, otherwise the cached
+     * result of resolving.
+     */
+    private static class Traversal {
+
+        final ResultCache rc;
+
+        final long fingerprint;
+
+        // The cached result, otherwise null
+        ResolverResult cached;
+
+        ReifiedDependencies rds;
+
+        // The snapshot of the module graph traversed, otherwise null
+        ModuleGraphSnapshot snapshot;
+
+        // Service provider module name to module ids, when service provider
+        // modules are resolved in the same phase as the application
+        Map<String, Set<ModuleId>> providers = Collections.emptyMap();
+
+        Traversal(ResultCache rc, long fingerprint) {
+            this.rc = rc;
+            this.fingerprint = fingerprint;
+        }
+    }
+    
+    /**
+     * Traverse the module graph from root dependences, unless the result of 
+     * resolving is cached.
+     * 
+     * @throws ResolverException if the failure to resolve is cached.
+     */
+    private Traversal traverse(Collection<ModuleIdQuery> midqs) throws Exception {
+        ResultCache rc = results;
+
+        // The stamp of the library, obtained once per resolve
+        CatalogStamp stamp = CatalogStamp.of(cat, libraryDir);
+        cat.refresh(stamp);
+
+        Traversal tr = new Traversal(rc, stamp.fingerprint);
+        if (rc != null) {
+            // Throws ResolverException if there was no solution
+            tr.cached = rc.get(stamp.fingerprint, midqs);
+            if (tr.cached != null) {
+                if (tracing) {
+                    trace(1, "Cached result: %s", tr.cached.resolvedModuleIds());
+                }
+                return tr;
+            }
+        }
+
+        tr.snapshot = openSnapshot(stamp);
+        sds.refresh(stamp);
+        
+        if (tracing) {
+            trace(1, singlePhase 
+                    ? "Single phase: resolving application and service provider modules"
+                    : "Phase 0: resolving application");
         }        
         
-        t.traverse(rds, midqs);
-        ResolverResult rr = _resolve(rds, Collections.EMPTY_SET, false, midqs);
+        tr.rds = new ReifiedDependencies();
+        t.traverse(tr.rds, tr.snapshot, Collections.<ModuleId>emptySet(), midqs);
+        
+        if (singlePhase) {
+            tr.providers = new LinkedHashMap<>();
+            traverseServiceProviders(tr.rds, tr.snapshot, midqs, tr.providers);
+        }
+        return tr;
+    }
+    
+    /**
+     * Resolve from the traversed module graph, caching the result.
+     *
+     * @param hint the previous result, otherwise {@code null} if not 
+     * hinted.
+     */
+    private ResolverResult _resolve(Collection<ModuleIdQuery> midqs, Traversal tr,
+            ResolverResult hint) throws Exception {
+        if (tr.cached != null) {
+            return tr.cached;
+        }
+        
+        ResolverResult rr;
+        try {
+            rr = _resolve(midqs, tr.rds, tr.snapshot, tr.providers, hint);
+        } catch (ResolverException ex) {
+            // There is no solution
+            if (tr.rc != null) {
+                tr.rc.putFailure(tr.fingerprint, midqs, ex);
+            }
+            throw ex;
+        }
+        // A solution that is not optimal depends on the budget
+        if (tr.rc != null && rr.isOptimal()) {
+            tr.rc.put(tr.fingerprint, midqs, rr);
+        }
+        return rr;
+    }
+    
+ 
+    /**
+     * Create the state of resolving, with the budget of solving starting 
+     * from now.
+     */
+    private State newState(ModuleGraphSnapshot mgs) {
+        State st = new State();
+        st.snapshot = mgs;
+        st.solver.setBudget(solverTimeout, solverConflicts);
+        st.solver.setParallelism(solverParallelism);
+        st.solver.setPortfolio(solverPortfolio);
+        st.solver.setPortfolioExecutor(portfolioExecutor());
+        st.solver.setComponentExecutor(DefaultExecutors.COMPONENT);
+        return st;
+    }
+    
+    private State newState(ModuleGraphSnapshot mgs, ResolverResult hint) {
+        State st = newState(mgs);
+        if (hint != null) {
+            st.hint = hint.resolvedModuleIds();
+        }
+        return st;
+    }
+    
+    private ResolverResult _resolve(Collection<ModuleIdQuery> midqs, 
+            ReifiedDependencies rds, 
+            ModuleGraphSnapshot mgs,
+            Map<String, Set<ModuleId>> providers,
+            ResolverResult hint) throws Exception {
+        // Resolve without solving if there are no choices
+        ResolverResult rr = providers.isEmpty()
+                ? resolveWithoutChoices(rds)
+                : null;
+        
+        if (singlePhase) {
+            if (rr == null) {
+                rr = _resolve(rds, newState(mgs, hint), Collections.EMPTY_SET, false, midqs,
+                        providers, 0);
+            }
+
+            if (tracing) {
+                trace(1, "Resolved modules: %s", rr.resolvedModuleIds());
+            }        
+
+            return rr;
+        }
+        
+        // The state is created when solving, the constraints of modules 
+        // resolved without solving are not required by subsequent phases 
+        // since those modules are assumed
+        State st = null;
+        if (rr == null) {
+            st = newState(mgs, hint);
+            rr = _resolve(rds, st, Collections.EMPTY_SET, false, midqs,
+                    Collections.<String, Set<ModuleId>>emptyMap(), 0);
+        }
         
         if (tracing) {
             trace(1, "Phase 0: result: %s", rr.resolvedModuleIds());
         }        
         
+        return resolveServiceProviders(rds, mgs, st, rr, 0, hint);
+    }
+    
+    /**
+     * Resolve, without solving, if there are no choices.
+     * <p>
+     * There are no choices if each root dependence, and each view 
+     * dependence of the modules traversed, matches exactly one module 
+     * view/alias id, and there is one version of each module. In addition 
+     * there are no optional dependences, and no module views that permit
+     * only some modules to depend on them, that might otherwise result in 
+     * a conflict. Then all the modules traversed are resolved, in the 
+     * order traversed.
+     *
+     * @return the result, otherwise {@code null} if there are choices.
+     */
+    private ResolverResult resolveWithoutChoices(ReifiedDependencies rds) {
+        for (Set<ModuleId> mids : rds.roots.values()) {
+            if (mids.size() != 1) {
+                return null;
+            }
+        }
+        
+        for (ModuleId rmid : rds.modules) {
+            if (rds.nameToIds.get(rmid.name()).size() != 1) {
+                return null;
+            }
+            
+            ModuleInfo rmi = rds.idToView.get(rmid).moduleInfo();
+            for (ViewDependence vd : rmi.requiresModules()) {
+                if (vd.modifiers().contains(Modifier.OPTIONAL)) {
+                    return null;
+                }
+                
+                Set<ModuleId> mids = rds.dependenceToMatchingIds.get(vd);
+                if (mids.size() != 1) {
+                    return null;
+                }
+                if (!rds.idToView.get(mids.iterator().next()).permits().isEmpty()) {
+                    return null;
+                }
+            }
+        }
+        
+        final Set<ModuleId> mids = new LinkedHashSet<>(rds.modules);
+        
+        if (tracing) {
+            trace(1, 1, "Solution, without choices: %s", mids);
+        }
+        
+        return new ResolverResult() {
+            @Override
+            public Set<ModuleId> resolvedModuleIds() {
+                return Collections.unmodifiableSet(mids);
+            }
+
+            @Override
+            public boolean isOptimal() {
+                return true;
+            }
+            
+            @Override
+            public String toString() {
+                return mids.toString();
+            }
+        };
+    }
+    
+    /**
+     * Resolve, in subsequent phases, the service provider modules of the
+     * application modules resolved in phase 0.
+     * 
+     * @param st the state of resolving the application, otherwise 
+     * {@code null} if the application was resolved without solving.
+     * @param selector the selector of the root dependences of the 
+     * application, otherwise 0 if not selected.
+     * @param hint the hint of the state created if the application was
+     * resolved without solving, otherwise {@code null}.
+     */
+    private ResolverResult resolveServiceProviders(ReifiedDependencies rds, 
+            ModuleGraphSnapshot mgs, State st,
+            ResolverResult rr, int selector,
+            ResolverResult hint) throws Exception {
+        final Set<ModuleId> _mids = new LinkedHashSet<>();
         Set<ModuleId> mids = rr.resolvedModuleIds();
         _mids.addAll(mids);
+        boolean optimal = rr.isOptimal();
         Set<ModuleId> spMids = sds.getProviderModules(mids);
         spMids.removeAll(_mids);
         int p = 1;
@@ -112,8 +1139,24 @@ public class Sat4JResolver implements Resolver {
             
             rds.reset();
             Set<ModuleIdQuery> spMidqs = toMidqs(spMids);
-            t.traverse(rds, _mids, spMidqs);
-            rr = _resolve(rds, _mids, true, spMidqs);
+            t.traverse(rds, mgs, _mids, spMidqs);
+            if (st == null) {
+                st = newState(mgs, hint);
+            }
+            try {
+                rr = _resolve(rds, st, _mids, true, spMidqs,
+                        Collections.<String, Set<ModuleId>>emptyMap(), selector);
+            } catch (TimeoutException ex) {
+                // The budget is exhausted, the service provider modules 
+                // are optional and so the modules resolved so far are
+                // a solution
+                if (tracing) {
+                    trace(1, "Phase %d: %s", p, ex.getMessage());
+                }
+                optimal = false;
+                break;
+            }
+            optimal &= rr.isOptimal();
             
             if (tracing) {
                 trace(1, "Phase %d: result: %s", p++, rr.resolvedModuleIds());
@@ -129,68 +1172,218 @@ public class Sat4JResolver implements Resolver {
             trace(1, "Resolved modules: %s", _mids);
         }        
         
+        final boolean _optimal = optimal;
         return new ResolverResult() {
             @Override
             public Set<ModuleId> resolvedModuleIds() {
-                return _mids;
+                return Collections.unmodifiableSet(_mids);
+            }
+
+            @Override
+            public boolean isOptimal() {
+                return _optimal;
             }
         };
     }
     
-    private Set<ModuleIdQuery> toMidqs(Collection<ModuleId> mids) {
-        Set<ModuleIdQuery> midqs = new LinkedHashSet<>();
-        for (ModuleId mid : mids) {
-            midqs.add(new ModuleIdQuery(mid.name(), null));
+    /**
+     * Traverse the module graph from the service provider modules of the
+     * modules traversed from the root dependences.
+     *
+     * @param providers updated with the service provider module name to
+     * the module ids traversed.
+     */
+    private void traverseServiceProviders(ReifiedDependencies rds,
+            ModuleGraphSnapshot mgs,
+            Collection<ModuleIdQuery> midqs,
+            Map<String, Set<ModuleId>> providers) throws Exception {
+        // Traverse from the service provider modules of all modules in the
+        // graph, not just those resolved, until no further service provider
+        // modules are found
+        Set<ModuleId> consumers = new LinkedHashSet<>(rds.modules);
+        while (!consumers.isEmpty()) {
+            Set<ModuleIdQuery> spMidqs = new LinkedHashSet<>();
+            for (ModuleIdQuery spMidq : toMidqs(sds.getProviderModules(consumers))) {
+                if (!providers.containsKey(spMidq.name())) {
+                    spMidqs.add(spMidq);
+                }
+            }
+            if (spMidqs.isEmpty()) {
+                break;
+            }
+            
+            if (tracing) {
+                trace(1, "Single phase: traversing service provider modules %s", spMidqs);
+            }
+            
+            Set<ModuleId> visited = new HashSet<>(rds.modules);
+            t.traverse(rds, mgs, visited, spMidqs);
+            
+            // Service provider modules are not roots
+            for (ModuleIdQuery spMidq : spMidqs) {
+                Set<ModuleId> mids = midqs.contains(spMidq)
+                        ? rds.roots.get(spMidq)
+                        : rds.roots.remove(spMidq);
+                providers.put(spMidq.name(), mids);
+            }
+            
+            consumers = new LinkedHashSet<>(rds.modules);
+            consumers.removeAll(visited);
         }
-        return midqs;
     }
     
-    private String join(Collection<? extends Object> os, String sep) {
-        StringBuilder sb = new StringBuilder();
+    /**
+     * Resolve collections of module id queries, traversing the module graph
+     * from the union of the root dependences and encoding the constraints
+     * once.
+     * <p>
+     * The root dependences of each collection are selected by a selector,
+     * and the application of each collection is solved assuming its 
+     * selector. Service provider modules are then resolved, in subsequent
+     * phases, for each collection in turn.
+     */
+    private List<ResolverOutcome> _resolveAll(List<Collection<ModuleIdQuery>> midqss,
+            ModuleGraphSnapshot mgs) throws Exception {
+        // Union of the root dependences, in declaration order
+        Set<ModuleIdQuery> union = new LinkedHashSet<>();
+        for (Collection<ModuleIdQuery> midqs : midqss) {
+            union.addAll(midqs);
+        }
+        
+        ReifiedDependencies rds = new ReifiedDependencies();
+        State st = newState(mgs);
+        
+        if (tracing) {
+            trace(1, "Phase 0: resolving applications");
+        }        
+        
+        t.traverse(rds, mgs, Collections.<ModuleId>emptySet(), union);
+        
+        Map<String, Set<ModuleId>> providers = Collections.emptyMap();
+        if (singlePhase) {
+            providers = new LinkedHashMap<>();
+            traverseServiceProviders(rds, mgs, union, providers);
+        }
+        
+        int[] selectors = new int[midqss.size()];
+        for (int i = 0; i < selectors.length; i++) {
+            selectors[i] = st.cs.selector();
+        }
+        encode(rds, st, false, midqss, selectors, providers);
+        
+        // Solve all applications before resolving service provider modules
+        // since the latter resets the reified dependencies
+        List<ResolverOutcome> outcomes = new ArrayList<>(midqss.size());
+        for (int i = 0; i < selectors.length; i++) {
+            if (tracing) {
+                trace(1, 1, "Resolving queries %s", midqss.get(i));
+            }
+            
+            // The budget of solving applies to each collection
+            st.solver.setBudget(solverTimeout, solverConflicts);
+            try {
+                ResolverResult rr = solve(rds, st, Collections.EMPTY_SET, 
+                        midqss.get(i), selectors[i]);
+                outcomes.add(new ResolverOutcome(rr));
+            } catch (ResolverException ex) {
+                outcomes.add(new ResolverOutcome(ex));
+            } catch (TimeoutException ex) {
+                outcomes.add(new ResolverOutcome(new ResolverException(ex)));
+            }
+        }
         
-        for (Object o : os) {
-            if (sb.length() > 0) {
-                sb.append(sep);
+        if (!singlePhase) {
+            for (int i = 0; i < selectors.length; i++) {
+                ResolverOutcome o = outcomes.get(i);
+                if (!o.isResolved()) {
+                    continue;
+                }
+                
+                if (tracing) {
+                    trace(1, "Phase 0: result: %s", o.result().resolvedModuleIds());
+                }        
+                
+                st.solver.setBudget(solverTimeout, solverConflicts);
+                try {
+                    ResolverResult rr = resolveServiceProviders(rds, mgs, st, 
+                            o.result(), selectors[i], null);
+                    outcomes.set(i, new ResolverOutcome(rr));
+                } catch (ResolverException ex) {
+                    outcomes.set(i, new ResolverOutcome(ex));
+                }
             }
-            sb.append(o);
         }
-        return sb.toString();
+        
+        return outcomes;
+    }
+    
+    private Set<ModuleIdQuery> toMidqs(Collection<ModuleId> mids) {
+        Set<ModuleIdQuery> midqs = new LinkedHashSet<>();
+        for (ModuleId mid : mids) {
+            midqs.add(new ModuleIdQuery(mid.name(), null));
+        }
+        return midqs;
     }
     
     private ResolverResult _resolve(ReifiedDependencies rds,
+            State st,
             Collection<ModuleId> resolvedMids,
             boolean optional,
-            Collection<ModuleIdQuery> midqs) throws Exception {
+            Collection<ModuleIdQuery> midqs,
+            Map<String, Set<ModuleId>> providers,
+            int selector) throws Exception {
         if (tracing) {
             trace(1, 1, "Resolving %squeries %s with modules %s",
                     optional ? "optional " : "", midqs, rds.modules);
             trace(1, 1, "Using previously resolved modules %s", resolvedMids);            
         }        
         
-        IPBSolver s = new OptToPBSATAdapter(new PseudoOptDecorator(SolverFactory.newDefault()));
-        s.setVerbose(true);
-        DependencyHelper<String, String> helper = new DependencyHelper<>(s, false);
-        helper.setNegator(StringNegator.instance);
+        encode(rds, st, optional, Collections.singletonList(midqs), new int[]{selector},
+                providers);
+        return solve(rds, st, resolvedMids, midqs, selector);
+    }
+    
+    /**
+     * Encode the constraints of the modules traversed, and of the root 
+     * dependences of one or more collections of module id queries.
+     *
+     * @param midqss the collections of module id queries whose root
+     * dependences are encoded.
+     * @param selectors the selectors of the root dependences of each 
+     * collection, a selector of 0 if the root dependences are not selected.
+     */
+    private void encode(ReifiedDependencies rds,
+            State st,
+            boolean optional,
+            List<? extends Collection<ModuleIdQuery>> midqss,
+            int[] selectors,
+            Map<String, Set<ModuleId>> providers) throws Exception {
+        ModuleConstraints cs = st.cs;
 
         Map<ModuleId, ModuleId> viewOrAliasIdToModuleId = new HashMap<>();
-        Set<String> optionals = new HashSet<>();
+        // Retained between phases, and root collections, since the
+        // dependences of modules are encoded at most once
+        Set<String> optionals = st.optionals;
         Map<ModuleId, Set<ModuleId>> notPermitted = new HashMap<>();
         
         if (optional) {
             // ## Assumes when optional == true midqs names correspond to module names
-            for (ModuleIdQuery midq : midqs) {
-                optionals.add(midq.name());
+            for (Collection<ModuleIdQuery> midqs : midqss) {
+                for (ModuleIdQuery midq : midqs) {
+                    optionals.add(midq.name());
+                }
             }
         }
 
         // Module dependencies
         for (ModuleId rmid : rds.modules) {
             // Do not output clauses for dependences of a module 
-            // that is already resolved
-            if (resolvedMids.contains(rmid)) {
+            // that is already resolved, or encoded by a previous phase
+            if (!st.encodeModule(rmid)) {
                 continue;
             }
             
+            final int rvar = cs.var(rmid);
             ModuleInfo rmi = rds.idToView.get(rmid).moduleInfo();
             
             for (ViewDependence vd : rmi.requiresModules()) {
@@ -220,15 +1413,15 @@ public class Sat4JResolver implements Resolver {
                         }
                     }
                     
-                    List<String> names = new ArrayList<>(mids.size());
-                    
-                    names.add("-" + rmid);
-                    
+                    boolean isOptional = vd.modifiers().contains(Modifier.OPTIONAL);
+
+                    int[] lits = new int[1 + mids.size() + (isOptional ? 1 : 0)];
+                    int i = 0;
+                    lits[i++] = -rvar;
                     for (ModuleId mid : mids) {
-                        names.add(mid.toString());
+                        lits[i++] = cs.var(mid);
                     }
                     
-                    boolean isOptional = vd.modifiers().contains(Modifier.OPTIONAL);
                     // Optional dependence
                     // Add the literal "*" + mid to represent absense
                     if (isOptional) {
@@ -236,21 +1429,21 @@ public class Sat4JResolver implements Resolver {
                                 moduleInfo().id().name();
                         
                         optionals.add(moduleName);
-                        names.add("*" + moduleName);
+                        lits[i++] = cs.absent(moduleName);
                     }
                     
                     if (tracing) {
                         trace(1, 2, "# Clause: %s dependence %s, of module %s, matches modules %s",
                                 isOptional ? "Optional view" : "View", vd.query(), rmid, mids);
-                        trace(1, 2, "(%s)", join(names, " v "));
+                        trace(1, 2, "(%s)", cs.toString(lits, " v "));
                     }
                     
-                    helper.clause(
-                            String.format("%s dependence %s, of module %s, matches modules %s",
+                    cs.clause(
+                            new Label("%s dependence %s, of module %s, matches modules %s",
                             isOptional ? "Optional view" : "View", vd.query(), rmid, mids),
-                            names.toArray(new String[0]));
+                            lits);
                 } else {
-                    String moduleName = getModuleNameFromMidq(vd.query());
+                    String moduleName = getModuleNameFromMidq(st.snapshot, vd.query());
                     if (moduleName != null) {
                         // 1 or more modules are present but those do not match the query
 
@@ -263,10 +1456,10 @@ public class Sat4JResolver implements Resolver {
                             
                             optionals.add(moduleName);
                             
-                            helper.clause(
-                                    String.format("Optional view dependence %s, of module %s, matches no modules",
+                            cs.clause(
+                                    new Label("Optional view dependence %s, of module %s, matches no modules",
                                     vd.query(), rmid),
-                                    "-" + rmid, "*" + moduleName);                            
+                                    -rvar, cs.absent(moduleName));
                         } else {
                             if (tracing) {
                                 trace(1, 2, "# Clauses: View dependence %s, of module %s, matches no modules",
@@ -277,14 +1470,14 @@ public class Sat4JResolver implements Resolver {
 
                             // Fail with explicit conflicting clauses
                             // ## Not sure if this is a good idea                    
-                            helper.clause(
-                                    String.format("View dependence %s, of module %s, matches no modules",
+                            cs.clause(
+                                    new Label("View dependence %s, of module %s, matches no modules",
                                     vd.query(), rmid),
-                                    "-" + rmid, "*" + moduleName);
-                            helper.clause(
-                                    String.format("View dependence %s, of module %s, must match",
+                                    -rvar, cs.absent(moduleName));
+                            cs.clause(
+                                    new Label("View dependence %s, of module %s, must match",
                                     vd.query(), rmid),
-                                    "-" + rmid, "-" + "*" + moduleName);                            
+                                    -rvar, -cs.absent(moduleName));
                         }
                     } else {
                         // No modules match
@@ -300,10 +1493,10 @@ public class Sat4JResolver implements Resolver {
                                 trace(1, 2, "(-%s v *%s)", rmid, moduleName);
                             }
                             
-                            helper.clause(
-                                    String.format("Optional view dependence %s, of module %s, matches no modules",
+                            cs.clause(
+                                    new Label("Optional view dependence %s, of module %s, matches no modules",
                                     vd.query(), rmid),
-                                    "-" + rmid, "*" + moduleName);                            
+                                    -rvar, cs.absent(moduleName));
                         } else {
                             if (tracing) {
                                 trace(1, 2, "# Clauses: View dependence %s, of module %s, matches no modules",
@@ -314,15 +1507,53 @@ public class Sat4JResolver implements Resolver {
 
                             // Fail with explicit conflicting clauses
                             // ## Not sure if this is a good idea                    
-                            helper.clause(
-                                    String.format("View dependence %s, of module %s, matches no modules",
+                            cs.clause(
+                                    new Label("View dependence %s, of module %s, matches no modules",
                                     vd.query(), rmid),
-                                    "-" + rmid, "*" + moduleName);
-                            helper.clause(
-                                    String.format("View dependence %s, of module %s, must match",
+                                    -rvar, cs.absent(moduleName));
+                            cs.clause(
+                                    new Label("View dependence %s, of module %s, must match",
                                     vd.query(), rmid),
-                                    "-" + rmid, "-" + "*" + moduleName);                            
+                                    -rvar, -cs.absent(moduleName));
+                        }
+                    }
+                }
+            }
+
+            // Service dependences, when service provider modules are 
+            // resolved in the same phase
+            // A service dependence is an optional dependence on each
+            // service provider module
+            if (!providers.isEmpty() && !rmi.requiresServices().isEmpty()) {
+                Set<String> providerNames = new HashSet<>();
+                for (ServiceDependence sd : rmi.requiresServices()) {
+                    for (ModuleId pmid : sds.getProviderModules(sd.service())) {
+                        String moduleName = pmid.name();
+                        Set<ModuleId> mids = providers.get(moduleName);
+                        if (mids == null || mids.isEmpty() || !providerNames.add(moduleName)) {
+                            continue;
+                        }
+
+                        optionals.add(moduleName);
+
+                        int[] lits = new int[2 + mids.size()];
+                        int i = 0;
+                        lits[i++] = -rvar;
+                        for (ModuleId mid : mids) {
+                            lits[i++] = cs.var(mid);
+                        }
+                        lits[i++] = cs.absent(moduleName);
+
+                        if (tracing) {
+                            trace(1, 2, "# Clause: Service dependence %s, of module %s, provided by modules %s",
+                                    sd.service(), rmid, mids);
+                            trace(1, 2, "(%s)", cs.toString(lits, " v "));
                         }
+
+                        cs.clause(
+                                new Label("Service dependence %s, of module %s, provided by modules %s",
+                                sd.service(), rmid, mids),
+                                lits);
                     }
                 }
             }
@@ -338,48 +1569,156 @@ public class Sat4JResolver implements Resolver {
             Set<ModuleId> versions = rds.nameToIds.get(moduleName);
             
             if (versions.size() > 1 || (versions.size() > 0 && optionals.contains(moduleName))) {
-                List<String> names = new ArrayList<>(versions.size());
-                for (ModuleId mid : versions) {
-                    names.add("-" + mid.toString());
-                }
-
                 // There is at least one optional dependence on the module
                 boolean isOptional = optionals.contains(moduleName);
+
+                int[] lits = new int[versions.size() + (isOptional ? 1 : 0)];
+                int i = 0;
+                for (ModuleId mid : versions) {
+                    lits[i++] = -cs.var(mid);
+                }
                 if (isOptional) {
-                    names.add("-" + "*" + moduleName);
+                    lits[i++] = -cs.absent(moduleName);
+                }
+
+                // Constraint is encoded by a previous phase
+                if (!st.encodeVersions(moduleName, lits.length)) {
+                    continue;
                 }
                 
                 if (tracing) {
                     trace(1, 2, "# Clause: Only one version of modules %s%s",
                             versions, isOptional ? ", or optional" : "");
-                    trace(1, 2, "(%s) >= %d", join(names, " v "), names.size() - 1);
+                    trace(1, 2, "(%s) >= %d", cs.toString(lits, " v "), lits.length - 1);
                 }
                 
-                helper.atLeast(
-                        String.format("Only one version of modules %s%s",
+                cs.atLeast(
+                        new Label("Only one version of modules %s%s",
                         versions, isOptional ? ", or optional" : ""),
-                        names.size() - 1,
-                        names.toArray(new String[0]));
+                        lits.length - 1,
+                        lits);
             }
         }
 
-        // Resolved modules
-        for (ModuleId mid : resolvedMids) {
-            // ## Should be blocking clauses that are not part of the solution?
+        // Root modules to be installed
+        for (int k = 0; k < midqss.size(); k++) {
+            encodeRoots(rds, cs, optional, midqss.get(k), selectors[k],
+                    viewOrAliasIdToModuleId);
+        }
+
+        // Not permitted
+        for (Map.Entry<ModuleId, Set<ModuleId>> e : notPermitted.entrySet()) {
+            ModuleId mvid = e.getKey();
+            Set<ModuleId> mids = e.getValue();
+            
+            for (ModuleId mid : mids) {
+                if (!st.encodeNotPermitted(mvid, mid)) {
+                    continue;
+                }
+                
+                if (tracing) {
+                    trace(1, 2, "# Clause: Module %s is not permitted to depend on %s", mid, mvid);
+                    trace(1, 2, "(-%s v -%s)", mvid, mid);
+                }
+                
+                cs.clause(
+                        new Label("Module %s is not permitted to depend on %s", mid, mvid),
+                        -cs.var(mvid), -cs.var(mid));
+            }
+        }
+
+        // Views and aliases
+        for (Map.Entry<ModuleId, ModuleId> e : viewOrAliasIdToModuleId.entrySet()) {
+            ModuleId vamid = e.getKey();
+            ModuleId mid = e.getValue();
+            if (!st.encodeViewOrAlias(vamid)) {
+                continue;
+            }
+            
             if (tracing) {
-                trace(1, 2, "# Clause: Resolved module %s", mid);
-                trace(1, 2, "(%s)", mid);
+                trace(1, 2, "# Clause: Module %s is a view or alias of module %s", vamid, mid);
+                trace(1, 2, "(-%s v %s)", vamid, mid);
             }
             
-            helper.clause(
-                    String.format("Resolved module %s", mid),
-                    mid.toString());
+            cs.clause(
+                    new Label("Module %s is a view or alias of module %s",
+                    vamid, mid),
+                    -cs.var(vamid), cs.var(mid));
         }
 
-        // Root modules to be installed
+
+        // Objective function
+        // Optimize, lexicographically, to prefer present to absent optional
+        // modules, then to prefer newer to older versions
+        // There is no objective function when checking there is a solution
+        // ## Make configurable based on phase e.g. compile, install, runtime
+        if (!st.feasible) {
+            int nAbsent = 0;
+            int nVersions = 0;
+            for (String moduleName : moduleNames) {
+                nVersions += rds.nameToIds.get(moduleName).size();
+                if (optionals.contains(moduleName)) {
+                    nAbsent++;
+                }
+            }
+
+            int[][] vars = {new int[nAbsent], new int[nVersions]};
+            long[][] weights = {new long[nAbsent], new long[nVersions]};
+            int a = 0;
+            int v = 0;
+            for (String moduleName : moduleNames) {
+                Set<ModuleId> versions = rds.nameToIds.get(moduleName);
+                
+                int w = versions.size();
+                if (optionals.contains(moduleName)) {
+                    // Literal for optional dependence
+                    vars[0][a] = cs.absent(moduleName);
+                    weights[0][a++] = 1;
+                }
+                for (ModuleId mid : versions) {
+                    vars[1][v] = cs.var(mid);
+                    weights[1][v++] = w--;
+                }
+            }
+            
+            if (tracing) {
+                trace(1, 2, "# Objective function");
+                for (int level = 0; level < vars.length; level++) {
+                    StringBuilder sb = new StringBuilder();
+                    for (int i = 0; i < vars[level].length; i++) {
+                        if (sb.length() > 0) {
+                            sb.append(", ");
+                        }
+                        sb.append(weights[level][i]).append(".").append(cs.toString(vars[level][i]));
+                    }
+                    trace(1, 2, "Level %d: %s", level, sb);
+                }
+            }
+            
+            cs.objective(vars, weights);
+        }
+    }
+
+    /**
+     * Encode the root dependences of a collection of module id queries.
+     *
+     * @param selector the selector of the root dependences, otherwise 0
+     * if the root dependences are not selected.
+     */
+    private void encodeRoots(ReifiedDependencies rds,
+            ModuleConstraints cs,
+            boolean optional,
+            Collection<ModuleIdQuery> midqs,
+            int selector,
+            Map<ModuleId, ModuleId> viewOrAliasIdToModuleId) {
+        Set<ModuleIdQuery> _midqs = new HashSet<>(midqs);
         for (Map.Entry<ModuleIdQuery, Set<ModuleId>> e : rds.roots.entrySet()) {
             ModuleIdQuery midq = e.getKey();
             Set<ModuleId> versions = e.getValue();
+            if (!_midqs.contains(midq)) {
+                // Root dependence of another collection
+                continue;
+            }
             
             if (!versions.isEmpty()) {
                 // Process views and aliases
@@ -393,26 +1732,31 @@ public class Sat4JResolver implements Resolver {
                     }
                 }
                 
-                List<String> names = new ArrayList<>(versions.size());
+                int[] lits = new int[versions.size() + (optional ? 1 : 0)
+                        + (selector != 0 ? 1 : 0)];
+                int i = 0;
+                if (selector != 0) {
+                    lits[i++] = -selector;
+                }
                 for (ModuleId mid : versions) {
-                    names.add(mid.toString());
+                    lits[i++] = cs.var(mid);
                 }
                 
                 if (optional) {
                     // Root is optional
-                    names.add("*" + midq.name());
+                    lits[i++] = cs.absent(midq.name());
                 }
                 
                 if (tracing) {
                     trace(1, 2, "# Clause: %s dependence %s matches modules %s",
                             optional ? "Optional root" : "Root", midq, versions);
-                    trace(1, 2, "(%s)", join(names, " v "));
+                    trace(1, 2, "(%s)", cs.toString(lits, " v "));
                 }
                 
-                helper.clause(
-                        String.format("%s dependence %s matches modules %s",
+                cs.clause(
+                        new Label("%s dependence %s matches modules %s",
                         optional ? "Optional root" : "Root", midq, versions),
-                        names.toArray(new String[0]));
+                        lits);
             } else {
                 // ## This should never occur when optional == false
                 if (!optional) {
@@ -425,116 +1769,158 @@ public class Sat4JResolver implements Resolver {
 
                     // Fail with explicit conflicting clauses      
                     // ## Not sure if this is a good idea                    
-                    helper.clause(
-                            String.format("Root dependence %s matches no modules", midq),
-                            "-" + midq.name(), "*" + midq.name());
-                    helper.clause(
-                            String.format("Root dependence %s must match", midq),
-                            "-" + midq.name(), "-" + "*" + midq.name());
-                    helper.clause(
-                            String.format("Root dependence %s", midq),
-                            midq.name());
+                    cs.clause(
+                            new Label("Root dependence %s matches no modules", midq),
+                            -cs.unmatched(midq.name()), cs.absent(midq.name()));
+                    cs.clause(
+                            new Label("Root dependence %s must match", midq),
+                            -cs.unmatched(midq.name()), -cs.absent(midq.name()));
+                    cs.clause(
+                            new Label("Root dependence %s", midq),
+                            (selector != 0)
+                            ? new int[]{-selector, cs.unmatched(midq.name())}
+                            : new int[]{cs.unmatched(midq.name())});
                 }
             }
         }
+    }
 
-        // Not permitted
-        for (Map.Entry<ModuleId, Set<ModuleId>> e : notPermitted.entrySet()) {
-            ModuleId mvid = e.getKey();
-            Set<ModuleId> mids = e.getValue();
-            
-            for (ModuleId mid : mids) {
+    /**
+     * Select the strategy of solving from the features of the module graph
+     * and the encoded constraints.
+     */
+    private void selectStrategy(ReifiedDependencies rds, State st, SolverPolicy policy) {
+        int maxVersions = 0;
+        for (Set<ModuleId> versions : rds.nameToIds.values()) {
+            maxVersions = Math.max(maxVersions, versions.size());
+        }
+        int notPermitted = 0;
+        for (Set<ModuleId> mids : st.encodedNotPermitted.values()) {
+            notPermitted += mids.size();
+        }
+        SolverPolicy.Features f = new SolverPolicy.Features(rds.modules.size(),
+                maxVersions, st.optionals.size(), notPermitted,
+                st.cs.constraints().size());
+        
+        st.policy = policy;
+        st.rule = policy.select(f);
+        SolverPolicy.Strategy strategy = policy.strategy(st.rule);
+        st.solver.setConfiguration(strategy.solver());
+        st.solver.setParallelism(strategy.parallelism());
+        st.solver.setPortfolio(strategy.portfolio());
+        
+        if (tracing) {
+            trace(1, 1, "Features %s select strategy of rule %d: %s", f, st.rule, strategy);
+        }
+    }
+    
+    /**
+     * Solve the encoded constraints for the root dependences of a
+     * collection of module id queries.
+     *
+     * @param selector the selector of the root dependences, otherwise 0
+     * if the root dependences are not selected.
+     */
+    private ResolverResult solve(ReifiedDependencies rds,
+            State st,
+            Collection<ModuleId> resolvedMids,
+            Collection<ModuleIdQuery> midqs,
+            int selector) throws Exception {
+        ModuleConstraints cs = st.cs;
+        
+        // Resolved modules
+        // Assumed rather than encoded so constraints are retained between phases
+        int[] assumptions = new int[resolvedMids.size() + (selector != 0 ? 1 : 0)];
+        {
+            int i = 0;
+            for (ModuleId mid : resolvedMids) {
+                // ## Should be blocking clauses that are not part of the solution?
                 if (tracing) {
-                    trace(1, 2, "# Clause: Module %s is not permitted to depend on %s", mid, mvid);
-                    trace(1, 2, "(-%s v -%s)", mvid, mid);
+                    trace(1, 2, "# Assumption: Resolved module %s", mid);
+                    trace(1, 2, "(%s)", mid);
                 }
-                
-                helper.clause(
-                        String.format("Module %s is not permitted to depend on %s", mid, mvid),
-                        "-" + mvid, "-" + mid);
-            }
-        }
 
-        // Views and aliases
-        for (Map.Entry<ModuleId, ModuleId> e : viewOrAliasIdToModuleId.entrySet()) {
-            ModuleId vamid = e.getKey();
-            ModuleId mid = e.getValue();
-            if (tracing) {
-                trace(1, 2, "# Clause: Module %s is a view or alias of module %s", vamid, mid);
-                trace(1, 2, "(-%s v %s)", vamid, mid);
+                assumptions[i++] = cs.var(mid);
             }
             
-            helper.clause(
-                    String.format("Module %s is a view or alias of module %s",
-                    vamid, mid),
-                    "-" + vamid, "" + mid);
+            // Root dependences
+            if (selector != 0) {
+                assumptions[i++] = selector;
+            }
         }
 
-
-        // Objective function
-        // Optimize to prefer newer to older versions
-        // ## Make configurable based on phase e.g. compile, install, runtime
-        {
-            List<String> names = new ArrayList<>();
-            List<Integer> weights = new ArrayList<>();
-            
-            for (String moduleName : moduleNames) {
-                Set<ModuleId> versions = rds.nameToIds.get(moduleName);
-                
-                int w = versions.size();
-                if (optionals.contains(moduleName)) {
-                    // Literal for optional dependence
-                    names.add("*" + moduleName);
-                    // > than the sum of all the other non-optional weights
-                    weights.add(Integer.MAX_VALUE);
-                }
-                for (ModuleId mid : versions) {
-                    names.add(mid.toString());
-                    weights.add(w--);
-                }
+        SolverPolicy policy = solverPolicy;
+        if (policy != null && st.policy == null) {
+            selectStrategy(rds, st, policy);
+        }
+        
+        if (st.hint != null) {
+            // The modules traversed, resolved if hinted, and otherwise not
+            int[] hint = new int[rds.modules.size()];
+            int i = 0;
+            for (ModuleId mid : rds.modules) {
+                hint[i++] = st.hint.contains(mid) ? cs.var(mid) : -cs.var(mid);
             }
-            
-            if (tracing) {
-                trace(1, 2, "# Objective function");
-                StringBuilder sb = new StringBuilder();
-                for (int i = 0; i < names.size(); i++) {
-                    if (sb.length() > 0) {
-                        sb.append(", ");
-                    }
-                    sb.append(weights.get(i)).append(".").append(names.get(i));
+            st.solver.setHint(hint);
+        }
+        
+        long start = System.nanoTime();
+        int[] model;
+        try {
+            model = st.solver.solve(assumptions);
+        } finally {
+            if (st.policy != null) {
+                long nanos = System.nanoTime() - start;
+                st.policy.record(st.rule, nanos);
+                if (tracing) {
+                    trace(1, 1, "Solved with strategy of rule %d in %d ms", 
+                            st.rule, nanos / 1000000);
                 }
-                trace(1, 2, sb.toString());
-            }
-            
-            WeightedObject<String>[] wos = new WeightedObject[names.size()];
-            for (int i = 0; i < names.size(); i++) {
-                wos[i] = WeightedObject.newWO(names.get(i), weights.get(i));
             }
-            helper.setObjectiveFunction(wos);
         }
-        
-        if (helper.hasASolution()) {
-            Set<String> names = new LinkedHashSet<>(helper.getASolution());
+        if (model != null) {
+            boolean[] sat = cs.satisfied(model);
             
-            if (tracing) {
-                trace(1, 1, "Solution: %s", names);
+            Collection<ModuleId> order = rds.modules;
+            if (!new ArrayList<>(new LinkedHashSet<>(midqs)).equals(
+                    new ArrayList<>(rds.roots.keySet()))) {
+                // The module graph was traversed from the root dependences
+                // of other collections, or in another order
+                Set<ModuleId> _order = rds.modules(midqs);
+                _order.addAll(rds.modules);
+                order = _order;
             }
             
             final Set<ModuleId> mids = new LinkedHashSet<>();
             // Preserve topological order of solution
-            for (ModuleId mid : rds.modules) {
-                if (names.contains(mid.toString())) {
-                    // Ignore +v literal corresponding to view/aliase or optional dependence
+            // Ignore +v literals corresponding to view/aliase or optional dependence
+            for (ModuleId mid : order) {
+                if (sat[cs.var(mid)]) {
                     mids.add(mid);
                 }
             }
             
+            if (tracing) {
+                trace(1, 1, "Solution: %s", mids);
+            }
+            
+            // Any solution is a witness when checking there is a solution
+            final boolean optimal = st.solver.isOptimal() && !st.feasible;
+            if (tracing && !optimal && !st.feasible) {
+                trace(1, 1, "Solution is not optimal, the budget is exhausted");
+            }
+            
             return new ResolverResult() {
                 @Override
                 public Set<ModuleId> resolvedModuleIds() {
                     return Collections.unmodifiableSet(mids);
                 }
                 
+                @Override
+                public boolean isOptimal() {
+                    return optimal;
+                }
+                
                 @Override
                 public String toString() {
                     return mids.toString();
@@ -542,33 +1928,92 @@ public class Sat4JResolver implements Resolver {
             };
         } else {
             // ## Produce meaningful structure that can be processed by javac
-            try {
-                Set<String> why = helper.why();
-                
-                if (tracing) {
-                    trace(1, 1, "No solution: %s", why);
-                }
-                
-                throw new ResolverException(why.toString());
-            } catch (UnsupportedOperationException ex) {
+            Set<String> why = explain(cs, assumptions);
+            if (why.isEmpty()) {
                 if (tracing) {
                     trace(1, 1, "No solution");
                 }
-                
+
                 throw new ResolverException();
             }
+
+            if (tracing) {
+                trace(1, 1, "No solution: %s", why);
+            }
+
+            throw new ResolverException(why);
+        }
+    }
+
+    /**
+     * Explain why constraints have no solution.
+     * <p>
+     * The constraints are solved again, with explanation enabled, so that 
+     * the cost of explanation is only incurred when resolving fails.
+     *
+     * @return the labels of a subset of the constraints that conflict, 
+     * otherwise an empty set if explanation is disabled, exceeded the time 
+     * budget or is not possible.
+     */
+    private Set<String> explain(ModuleConstraints cs, int[] assumptions) throws Exception {
+        if (explanationTimeout <= 0) {
+            return Collections.emptySet();
+        }
+
+        // Optimization is not required to explain
+        XplainPB s = new XplainPB(SolverFactory.newDefault());
+        s.setTimeoutMs(explanationTimeout);
+
+        Map<IConstr, Label> labels = new HashMap<>();
+        try {
+            cs.addConstraintsTo(s, 0, labels);
+            for (int lit : assumptions) {
+                IConstr c = s.addClause(new VecInt(new int[]{lit}));
+                // Selectors of root dependences are not labelled
+                if (c != null && cs.moduleId(lit) != null) {
+                    labels.put(c, new Label("Resolved module %s", cs.moduleId(lit)));
+                }
+            }
+            if (s.isSatisfiable()) {
+                return Collections.emptySet();
+            }
+
+            Set<String> why = new LinkedHashSet<>();
+            for (IConstr c : s.explain()) {
+                Label label = labels.get(c);
+                if (label != null) {
+                    why.add(label.toString());
+                }
+            }
+            return why;
+        } catch (ContradictionException | TimeoutException ex) {
+            if (tracing) {
+                trace(1, 1, "Unable to explain: %s", ex.getMessage());
+            }
+
+            return Collections.emptySet();
         }
     }
     
-    private String getModuleNameFromMidq(ModuleIdQuery midq) {
-        return getModuleNameFromViewAliasName(midq.name());
+    private String getModuleNameFromMidq(ModuleGraphSnapshot mgs, ModuleIdQuery midq) {
+        return getModuleNameFromViewAliasName(mgs, midq.name());
     }
     
-    private String getModuleNameFromViewAliasName(String name) {
+    private String getModuleNameFromViewAliasName(ModuleGraphSnapshot mgs, String name) {
         try {
-            List<ModuleId> mids = l.findModuleIds(name);
+            if (mgs != null) {
+                List<ModuleId> mids = mgs.findModuleIds(name);
+                if (!mids.isEmpty()) {
+                    ModuleId mid = mgs.declaringModuleId(mids.get(0));
+                    if (mid != null) {
+                        return mid.name();
+                    }
+                }
+            }
+            
+            List<ModuleId> mids = cat.findModuleIds(name);
             if (!mids.isEmpty()) {
-                return l.readModuleInfo(mids.get(0)).id().name();
+                return cat.readModuleInfo(mids.get(0)).id().name();
             }
             
             return null;
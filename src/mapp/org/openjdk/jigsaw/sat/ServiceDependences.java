@@ -24,15 +24,17 @@
  */
 package org.openjdk.jigsaw.sat;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.module.ModuleId;
 import java.lang.module.ModuleInfo;
-import java.lang.module.ModuleView;
 import java.lang.module.ServiceDependence;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.openjdk.jigsaw.Catalog;
@@ -40,21 +42,131 @@ import org.openjdk.jigsaw.Catalog;
 /**
  * Functionality to process service dependences of service consumer modules to
  * obtain corresponding service provider modules present in a catalog.
+ * <p>
+ * The service provider modules of service interfaces are cached, and are
+ * looked up again once modules have been installed in, or removed from,
+ * the catalog and the index of service provider modules is refreshed. The
+ * index is refreshed when first used and by {@link #refresh()}, the
+ * resolver refreshes the index once per resolve.
+ * <p>
+ * Instances are thread-safe.
  */
 public class ServiceDependences {
 
+    /**
+     * The default maximum number of service interfaces whose service 
+     * provider modules are cached.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
     private final Catalog c;
 
+    // The file in which the service index is stored, may be null
+    private final File indexFile;
+
+    // The directory in which the catalog is located, may be null
+    private final File catalogDir;
+
+    // The service index, opened on first use and opened again when
+    // refreshed if the stamp of the catalog changes
+    private volatile ServiceIndex index;
+
+    // The stamp of the catalog with which to open the service index on
+    // first use, otherwise null if the stamp is obtained on first use
+    private CatalogStamp stamp;
+
+    // The number of threads that read module info when building the index
+    private volatile int parallelism = 1;
+
     // service interface to service provider midqs
-    private final Map<String, Set<ModuleId>> interfaceToProviders;
+    private final LruCache<String, Providers> interfaceToProviders;
+
+    /**
+     * The service provider module ids of a service interface, and the
+     * index from which they were looked up.
+     */
+    private static final class Providers {
+
+        final ServiceIndex index;
+
+        final Set<ModuleId> mids;
+
+        Providers(ServiceIndex index, Set<ModuleId> mids) {
+            this.index = index;
+            this.mids = mids;
+        }
+    }
 
     /**
      *
      * @param c catalog to look up service provider modules
      */
     public ServiceDependences(Catalog c) {
+        this(c, null);
+    }
+
+    /**
+     *
+     * @param c catalog to look up service provider modules
+     * @param indexFile the file in which to store the index of service
+     * interface to service provider modules, otherwise {@code null} if the
+     * index is held in memory. If the file exists it is memory mapped, and
+     * updated if modules have since been installed in, or removed from, the
+     * catalog.
+     */
+    public ServiceDependences(Catalog c, File indexFile) {
+        this(c, indexFile, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     *
+     * @param c catalog to look up service provider modules
+     * @param indexFile the file in which to store the index of service
+     * interface to service provider modules, otherwise {@code null} if the
+     * index is held in memory.
+     * @param cacheSize the maximum number of service interfaces whose service
+     * provider modules are cached, the least recently used are evicted.
+     * @throws IllegalArgumentException if {@code cacheSize} is less than 1.
+     */
+    public ServiceDependences(Catalog c, File indexFile, int cacheSize) {
         this.c = c;
-        this.interfaceToProviders = new HashMap<>();
+        this.indexFile = indexFile;
+        this.catalogDir = CatalogStamp.directory(c);
+        this.interfaceToProviders = new LruCache<>(cacheSize);
+    }
+
+    /**
+     * @return the number of look ups of service provider modules, for a 
+     * service interface, that were cached.
+     */
+    public long getCacheHitCount() {
+        return interfaceToProviders.hits();
+    }
+
+    /**
+     * @return the number of look ups of service provider modules, for a 
+     * service interface, that were not cached.
+     */
+    public long getCacheMissCount() {
+        return interfaceToProviders.misses();
+    }
+
+    /**
+     * Set the number of threads that read module info when the index of 
+     * service interface to service provider modules is built, or updated.
+     * By default module info is read by the calling thread.
+     * <p>
+     * The catalog must support concurrent reads of module info if the
+     * number of threads is greater than 1.
+     *
+     * @param parallelism the number of threads.
+     * @throws IllegalArgumentException if {@code parallelism} is less than 1.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.parallelism = parallelism;
     }
 
     /**
@@ -68,10 +180,54 @@ public class ServiceDependences {
      * @throws IOException if there is an error using the catalog.
      */
     public Set<ModuleId> getProviderModules(Collection<ModuleId> mids) throws IOException {
+        // Gather the service interfaces so that those not cached are
+        // looked up together
+        final Set<String> serviceInterfaces = new LinkedHashSet<>();
+        for (ModuleId mid : mids) {
+            final ModuleInfo mi = c.readModuleInfo(mid);
+            if (mi != null) {
+                for (ServiceDependence sd : mi.requiresServices()) {
+                    serviceInterfaces.add(sd.service());
+                }
+            }
+        }
+
         final Set<ModuleId> providers = new LinkedHashSet<>();
+        for (Set<ModuleId> p : getServiceProviderModules(serviceInterfaces).values()) {
+            providers.addAll(p);
+        }
+        return providers;
+    }
 
-        for (ModuleId mid : mids) {
-            getProviderModules(mid, providers);
+    /**
+     * Get all service provider module ids for a collection of service
+     * interfaces.
+     * <p>
+     * The service interfaces whose service provider modules are not cached
+     * are looked up in one pass.
+     *
+     * @param serviceInterfaces the service interfaces.
+     * @return a map, in the order of the service interfaces, of service
+     * interface to an unmodifiable set of service provider module ids of
+     * modules present in the catalog.
+     *
+     * @throws IOException if there is an error using the catalog.
+     */
+    public Map<String, Set<ModuleId>> getServiceProviderModules(Collection<String> serviceInterfaces) throws IOException {
+        final Map<String, Set<ModuleId>> providers = new LinkedHashMap<>();
+
+        ServiceIndex i = index();
+        List<String> uncached = new ArrayList<>();
+        for (String serviceInterface : serviceInterfaces) {
+            Set<ModuleId> p = cached(i, serviceInterface);
+            if (p == null) {
+                uncached.add(serviceInterface);
+            }
+            providers.put(serviceInterface, p);
+        }
+
+        for (String serviceInterface : uncached) {
+            providers.put(serviceInterface, lookUp(i, serviceInterface));
         }
 
         return providers;
@@ -100,8 +256,9 @@ public class ServiceDependences {
         
         final Set<ServiceDependence> serviceDeps = mi.requiresServices();
         if (!serviceDeps.isEmpty()) {
+            ServiceIndex i = index();
             for (ServiceDependence sd : mi.requiresServices()) {
-                providers.addAll(getProviderModules(sd.service()));
+                providers.addAll(getProviderModules(i, sd.service()));
             }
         }
 
@@ -118,27 +275,73 @@ public class ServiceDependences {
      * @throws IOException if there is an error using the catalog.
      */
     public Set<ModuleId> getProviderModules(String serviceInterface) throws IOException {
-        Set<ModuleId> providers = interfaceToProviders.get(serviceInterface);
-        if (providers != null) {
-            return providers;
-        }
+        return getProviderModules(index(), serviceInterface);
+    }
+
+    private Set<ModuleId> getProviderModules(ServiceIndex i, String serviceInterface) {
+        Set<ModuleId> providers = cached(i, serviceInterface);
+        return (providers != null) ? providers : lookUp(i, serviceInterface);
+    }
+
+    /**
+     * @return the cached service provider module ids, otherwise 
+     * {@code null} if not cached or if cached from a previous index.
+     */
+    private Set<ModuleId> cached(ServiceIndex i, String serviceInterface) {
+        Providers p = interfaceToProviders.get(serviceInterface);
+        return (p != null && p.index == i) ? p.mids : null;
+    }
 
-        providers = new LinkedHashSet<>();
+    private Set<ModuleId> lookUp(ServiceIndex i, String serviceInterface) {
+        Set<ModuleId> mids = Collections.unmodifiableSet(i.providers(serviceInterface));
+        interfaceToProviders.put(serviceInterface, new Providers(i, mids));
+        return mids;
+    }
 
-        // ## This is very inefficient the library should contain
-        // an index of service interface to set of service provider modules
-        for (ModuleId providerId : c.listDeclaringModuleIds()) {
-            final ModuleInfo provider = c.readModuleInfo(providerId);
-            for (ModuleView providerView : provider.views()) {
-                if (providerView.services().containsKey(serviceInterface)) {
-                    providers.add(providerId);
-                    break;
+    /**
+     * Refresh the index of service provider modules. If modules have since
+     * been installed in, or removed from, the catalog then the index is
+     * updated and the cached service provider modules are cleared.
+     *
+     * @throws IOException if there is an error using the catalog.
+     */
+    public void refresh() throws IOException {
+        refresh(CatalogStamp.of(c, catalogDir));
+    }
+
+    /**
+     * Refresh the index of service provider modules from a stamp of the
+     * catalog already obtained.
+     */
+    synchronized void refresh(CatalogStamp stamp) throws IOException {
+        ServiceIndex i = index;
+        if (i == null) {
+            // Not yet used
+            this.stamp = stamp;
+        } else if (i.fingerprint() != stamp.fingerprint) {
+            index = ServiceIndex.open(c, stamp, indexFile, i, parallelism);
+            interfaceToProviders.clear();
+        }
+    }
+
+    /**
+     * Get the service index, opening it on first use.
+     */
+    private ServiceIndex index() throws IOException {
+        ServiceIndex i = index;
+        if (i == null) {
+            synchronized (this) {
+                i = index;
+                if (i == null) {
+                    CatalogStamp s = (stamp != null)
+                            ? stamp
+                            : CatalogStamp.of(c, catalogDir);
+                    i = ServiceIndex.open(c, s, indexFile, null, parallelism);
+                    index = i;
+                    stamp = null;
                 }
             }
         }
-
-        providers = Collections.unmodifiableSet(providers);
-        interfaceToProviders.put(serviceInterface, providers);
-        return providers;
+        return i;
     }
 }
@@ -0,0 +1,474 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.sat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.module.ModuleId;
+import java.lang.module.ModuleInfo;
+import java.lang.module.ModuleSystem;
+import java.lang.module.ModuleView;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.openjdk.jigsaw.Catalog;
+import org.openjdk.jigsaw.JigsawModuleSystem;
+import static org.openjdk.jigsaw.sat.SatTrace.*;
+
+/**
+ * An index of service interface to the ids of service provider modules
+ * present in a catalog.
+ * <p>
+ * The index is built once, by reading the module info of all modules in the
+ * catalog, and may be stored in a file that is memory mapped when the index
+ * is subsequently opened. The index records the fingerprint of the stamp of
+ * the catalog, and the modification time of each module. If the fingerprint
+ * differs when the index is opened then the index is updated, reading the
+ * module info of just those modules that have been installed, or whose
+ * modification time differs, since the index was built.
+ * <p>
+ * The index has the following format, integers are big endian:
+ * <pre>
+ * int magic
+ * int version
+ * long fingerprint
+ * int number of modules
+ * int number of services
+ * int offset of module table: for each module, int offset of module id
+ *     string, long modification time
+ * int offset of service table: for each service, sorted by hash code,
+ *     int hash code, int offset of service interface string,
+ *     int offset of providers
+ * strings: int length, UTF-8 bytes
+ * providers: int number of providers, int index of each provider module
+ * </pre>
+ *
+ * @see CatalogStamp
+ */
+final class ServiceIndex {
+
+    private static final int MAGIC = 0x4A534958;
+
+    private static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 32;
+
+    private static final int MODULE_ENTRY_SIZE = 12;
+
+    private static final int SERVICE_ENTRY_SIZE = 12;
+
+    private static final ModuleSystem ms = JigsawModuleSystem.instance();
+
+    // The index, mapped from a file or on the heap
+    private final ByteBuffer bb;
+
+    private final int nModules;
+
+    private final int nServices;
+
+    private final int modulesOffset;
+
+    private final int servicesOffset;
+
+    // Decoded module ids, indexed by module
+    private final ModuleId[] mids;
+
+    private ServiceIndex(ByteBuffer bb) throws IOException {
+        if (bb.capacity() < HEADER_SIZE
+                || bb.getInt(0) != MAGIC
+                || bb.getInt(4) != VERSION) {
+            throw new IOException("Invalid service index");
+        }
+
+        this.bb = bb;
+        this.nModules = bb.getInt(16);
+        this.nServices = bb.getInt(20);
+        this.modulesOffset = bb.getInt(24);
+        this.servicesOffset = bb.getInt(28);
+        this.mids = new ModuleId[nModules];
+    }
+
+    long fingerprint() {
+        return bb.getLong(8);
+    }
+
+    /**
+     * Open the index of a catalog.
+     *
+     * @param c the catalog.
+     * @param stamp the stamp of the catalog.
+     * @param file the file in which the index is stored, otherwise
+     * {@code null} if the index is not stored.
+     * @param previous a previously opened index, otherwise {@code null},
+     * that is returned if current, otherwise updated if the file cannot be
+     * read.
+     * @param parallelism the number of threads that read module info when
+     * building or updating the index.
+     * @throws IOException if there is an error using the catalog.
+     */
+    static ServiceIndex open(Catalog c, CatalogStamp stamp, File file,
+            ServiceIndex previous, int parallelism) throws IOException {
+        if (previous != null && previous.fingerprint() == stamp.fingerprint) {
+            return previous;
+        }
+
+        ServiceIndex si = previous;
+        if (file != null && file.exists()) {
+            try {
+                si = new ServiceIndex(IndexFiles.map(file));
+            } catch (IOException ex) {
+                if (tracing) {
+                    trace(1, "Service index %s cannot be read: %s", file, ex.getMessage());
+                }
+            }
+
+            if (si != null && si.fingerprint() == stamp.fingerprint) {
+                return si;
+            }
+        }
+
+        if (tracing) {
+            trace(1, "Service index %s: %s",
+                    file == null ? "in memory" : file,
+                    si == null ? "building" : "updating");
+        }
+
+        ByteBuffer bb = build(c, stamp, si, parallelism);
+
+        if (file != null) {
+            try {
+                IndexFiles.write(bb, file);
+                return new ServiceIndex(IndexFiles.map(file));
+            } catch (IOException ex) {
+                // Use the index without storing it
+                if (tracing) {
+                    trace(1, "Service index %s cannot be written: %s", file, ex.getMessage());
+                }
+            }
+        }
+
+        return new ServiceIndex(bb);
+    }
+
+    /**
+     * Get the service provider module ids of a service interface.
+     *
+     * @return a set of service provider module ids, in the order of modules
+     * in the catalog.
+     */
+    Set<ModuleId> providers(String serviceInterface) {
+        int offset = find(serviceInterface);
+        if (offset < 0) {
+            return Collections.emptySet();
+        }
+
+        int n = bb.getInt(offset);
+        Set<ModuleId> providers = new LinkedHashSet<>(n);
+        for (int i = 0; i < n; i++) {
+            providers.add(moduleId(bb.getInt(offset + 4 + i * 4)));
+        }
+        return providers;
+    }
+
+    // Binary search on hash code of the service interface
+    // Returns the offset of the providers, otherwise -1
+    private int find(String serviceInterface) {
+        int hash = serviceInterface.hashCode();
+        int lo = 0;
+        int hi = nServices - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int h = bb.getInt(servicesOffset + mid * SERVICE_ENTRY_SIZE);
+            if (h < hash) {
+                lo = mid + 1;
+            } else if (h > hash) {
+                hi = mid - 1;
+            } else {
+                // Search entries with equal hash codes
+                for (int i = mid; i >= 0 && hashAt(i) == hash; i--) {
+                    if (serviceAt(i).equals(serviceInterface)) {
+                        return providersAt(i);
+                    }
+                }
+                for (int i = mid + 1; i < nServices && hashAt(i) == hash; i++) {
+                    if (serviceAt(i).equals(serviceInterface)) {
+                        return providersAt(i);
+                    }
+                }
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private int hashAt(int i) {
+        return bb.getInt(servicesOffset + i * SERVICE_ENTRY_SIZE);
+    }
+
+    private String serviceAt(int i) {
+        return IndexFiles.string(bb, bb.getInt(servicesOffset + i * SERVICE_ENTRY_SIZE + 4));
+    }
+
+    private int providersAt(int i) {
+        return bb.getInt(servicesOffset + i * SERVICE_ENTRY_SIZE + 8);
+    }
+
+    private synchronized ModuleId moduleId(int i) {
+        ModuleId mid = mids[i];
+        if (mid == null) {
+            mid = ms.parseModuleId(IndexFiles.string(bb, bb.getInt(modulesOffset + i * MODULE_ENTRY_SIZE)));
+            mids[i] = mid;
+        }
+        return mid;
+    }
+
+    private long modified(int i) {
+        return bb.getLong(modulesOffset + i * MODULE_ENTRY_SIZE + 4);
+    }
+
+    /**
+     * Build the index.
+     *
+     * @param stamp the stamp of the catalog.
+     * @param previous a previous index, otherwise {@code null}. The service
+     * providers of the previous index are retained for modules whose
+     * modification time is unchanged, the module info of any other module
+     * is read from the catalog.
+     * @param parallelism the number of threads that read module info.
+     */
+    private static ByteBuffer build(Catalog c, CatalogStamp stamp,
+            ServiceIndex previous, int parallelism) throws IOException {
+        List<ModuleId> mids = stamp.listing;
+        Map<ModuleId, Integer> midToIndex = new HashMap<>();
+        for (ModuleId mid : mids) {
+            midToIndex.put(mid, midToIndex.size());
+        }
+
+        // Service interface to indexes of service provider modules
+        Map<String, Set<Integer>> services = new HashMap<>();
+
+        // Retain providers that are still present and unchanged
+        Set<ModuleId> indexed = new HashSet<>();
+        if (previous != null) {
+            boolean[] retained = new boolean[previous.nModules];
+            for (int i = 0; i < previous.nModules; i++) {
+                ModuleId mid = previous.moduleId(i);
+                if (midToIndex.containsKey(mid)
+                        && previous.modified(i) == stamp.modified(mid)) {
+                    retained[i] = true;
+                    indexed.add(mid);
+                }
+            }
+
+            for (int i = 0; i < previous.nServices; i++) {
+                String serviceInterface = previous.serviceAt(i);
+                int offset = previous.providersAt(i);
+                int n = previous.bb.getInt(offset);
+                for (int j = 0; j < n; j++) {
+                    int p = previous.bb.getInt(offset + 4 + j * 4);
+                    if (retained[p]) {
+                        add(services, serviceInterface, midToIndex.get(previous.moduleId(p)));
+                    }
+                }
+            }
+        }
+
+        // Read modules installed, or modified, since the previous index
+        // was built
+        List<ModuleId> unindexed = new ArrayList<>();
+        for (ModuleId mid : mids) {
+            if (!indexed.contains(mid)) {
+                unindexed.add(mid);
+            }
+        }
+        List<ModuleInfo> mis = (parallelism > 1 && unindexed.size() > parallelism)
+                ? readModuleInfos(c, unindexed, parallelism)
+                : readModuleInfos(c, unindexed);
+        for (int i = 0; i < unindexed.size(); i++) {
+            ModuleInfo mi = mis.get(i);
+            if (mi != null) {
+                for (ModuleView mv : mi.views()) {
+                    for (String serviceInterface : mv.services().keySet()) {
+                        add(services, serviceInterface, midToIndex.get(unindexed.get(i)));
+                    }
+                }
+            }
+        }
+
+        return encode(stamp, services);
+    }
+
+    /**
+     * Read the module info of modules.
+     *
+     * @return the module info of each module, in the order of the module
+     * ids, otherwise {@code null} if not present.
+     */
+    private static List<ModuleInfo> readModuleInfos(Catalog c, List<ModuleId> mids) throws IOException {
+        List<ModuleInfo> mis = new ArrayList<>(mids.size());
+        for (ModuleId mid : mids) {
+            mis.add(c.readModuleInfo(mid));
+        }
+        return mis;
+    }
+
+    /**
+     * Read the module info of modules, partitioning the modules across
+     * threads.
+     */
+    private static List<ModuleInfo> readModuleInfos(final Catalog c, List<ModuleId> mids,
+            int parallelism) throws IOException {
+        ExecutorService es = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<List<ModuleInfo>>> fs = new ArrayList<>(parallelism);
+            int size = (mids.size() + parallelism - 1) / parallelism;
+            for (int from = 0; from < mids.size(); from += size) {
+                final List<ModuleId> part = mids.subList(from, Math.min(from + size, mids.size()));
+                fs.add(es.submit(new Callable<List<ModuleInfo>>() {
+                    @Override
+                    public List<ModuleInfo> call() throws IOException {
+                        return readModuleInfos(c, part);
+                    }
+                }));
+            }
+
+            List<ModuleInfo> mis = new ArrayList<>(mids.size());
+            for (Future<List<ModuleInfo>> f : fs) {
+                mis.addAll(f.get());
+            }
+            return mis;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            Throwable t = ex.getCause();
+            if (t instanceof IOException) {
+                throw (IOException) t;
+            } else if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else if (t instanceof Error) {
+                throw (Error) t;
+            }
+            throw new IOException(t);
+        } finally {
+            es.shutdownNow();
+        }
+    }
+
+    private static void add(Map<String, Set<Integer>> services, String serviceInterface, int i) {
+        Set<Integer> providers = services.get(serviceInterface);
+        if (providers == null) {
+            providers = new LinkedHashSet<>();
+            services.put(serviceInterface, providers);
+        }
+        providers.add(i);
+    }
+
+    private static ByteBuffer encode(CatalogStamp stamp, Map<String, Set<Integer>> services) {
+        List<ModuleId> mids = stamp.listing;
+
+        // Sort services by hash code then by service interface
+        TreeMap<String, Set<Integer>> sorted = new TreeMap<>(new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                int ha = a.hashCode();
+                int hb = b.hashCode();
+                return (ha != hb) ? (ha < hb ? -1 : 1) : a.compareTo(b);
+            }
+        });
+        sorted.putAll(services);
+
+        List<byte[]> midBytes = new ArrayList<>(mids.size());
+        int size = HEADER_SIZE + mids.size() * MODULE_ENTRY_SIZE + sorted.size() * SERVICE_ENTRY_SIZE;
+        for (ModuleId mid : mids) {
+            byte[] bytes = mid.toString().getBytes(IndexFiles.UTF_8);
+            midBytes.add(bytes);
+            size += 4 + bytes.length;
+        }
+        List<byte[]> serviceBytes = new ArrayList<>(sorted.size());
+        for (Map.Entry<String, Set<Integer>> e : sorted.entrySet()) {
+            byte[] bytes = e.getKey().getBytes(IndexFiles.UTF_8);
+            serviceBytes.add(bytes);
+            size += 4 + bytes.length + 4 + e.getValue().size() * 4;
+        }
+
+        ByteBuffer bb = ByteBuffer.allocate(size);
+        int modulesOffset = HEADER_SIZE;
+        int servicesOffset = modulesOffset + mids.size() * MODULE_ENTRY_SIZE;
+        bb.putInt(MAGIC).putInt(VERSION).putLong(stamp.fingerprint).
+                putInt(mids.size()).putInt(sorted.size()).
+                putInt(modulesOffset).putInt(servicesOffset);
+
+        bb.position(servicesOffset + sorted.size() * SERVICE_ENTRY_SIZE);
+        for (int i = 0; i < mids.size(); i++) {
+            int entry = modulesOffset + i * MODULE_ENTRY_SIZE;
+            bb.putInt(entry, bb.position());
+            bb.putLong(entry + 4, stamp.modified(mids.get(i)));
+            byte[] bytes = midBytes.get(i);
+            bb.putInt(bytes.length).put(bytes);
+        }
+
+        int i = 0;
+        for (Map.Entry<String, Set<Integer>> e : sorted.entrySet()) {
+            int entry = servicesOffset + i * SERVICE_ENTRY_SIZE;
+            bb.putInt(entry, e.getKey().hashCode());
+
+            bb.putInt(entry + 4, bb.position());
+            byte[] bytes = serviceBytes.get(i++);
+            bb.putInt(bytes.length).put(bytes);
+
+            bb.putInt(entry + 8, bb.position());
+            // Providers in the order of modules in the catalog
+            int[] providers = new int[e.getValue().size()];
+            int j = 0;
+            for (int p : e.getValue()) {
+                providers[j++] = p;
+            }
+            Arrays.sort(providers);
+            bb.putInt(providers.length);
+            for (int p : providers) {
+                bb.putInt(p);
+            }
+        }
+
+        bb.flip();
+        return bb;
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.sat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import org.sat4j.pb.SolverFactory;
+
+/**
+ * A policy that selects a strategy of solving from features of the encoded
+ * constraints.
+ * <p>
+ * The policy is a table of rules, in order of addition, and a strategy 
+ * otherwise. The first rule whose limits are not exceeded by any of the
+ * features selects its strategy. The number of selections of each rule, 
+ * and the time spent solving with its strategy, are recorded so the limits 
+ * may be calibrated.
+ *
+ * @see Sat4JResolver#setSolverPolicy(org.openjdk.jigsaw.sat.SolverPolicy)
+ */
+public final class SolverPolicy {
+
+    /**
+     * Features of the module graph and the encoded constraints, cheap to
+     * compute once traversed and encoded.
+     */
+    public static final class Features {
+
+        private final int modules;
+
+        private final int maxVersions;
+
+        private final int optionals;
+
+        private final int notPermitted;
+
+        private final int constraints;
+
+        /**
+         *
+         * @param modules the number of modules.
+         * @param maxVersions the greatest number of versions of a module 
+         * name.
+         * @param optionals the number of module names with optional
+         * dependences.
+         * @param notPermitted the number of modules not permitted to depend
+         * on a module view.
+         * @param constraints the number of constraints.
+         */
+        public Features(int modules, int maxVersions, int optionals,
+                int notPermitted, int constraints) {
+            this.modules = modules;
+            this.maxVersions = maxVersions;
+            this.optionals = optionals;
+            this.notPermitted = notPermitted;
+            this.constraints = constraints;
+        }
+
+        public int modules() {
+            return modules;
+        }
+
+        public int maxVersions() {
+            return maxVersions;
+        }
+
+        public int optionals() {
+            return optionals;
+        }
+
+        public int notPermitted() {
+            return notPermitted;
+        }
+
+        public int constraints() {
+            return constraints;
+        }
+
+        boolean within(Features limits) {
+            return modules <= limits.modules
+                    && maxVersions <= limits.maxVersions
+                    && optionals <= limits.optionals
+                    && notPermitted <= limits.notPermitted
+                    && constraints <= limits.constraints;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("modules=%d, maxVersions=%d, optionals=%d, notPermitted=%d, constraints=%d",
+                    modules, maxVersions, optionals, notPermitted, constraints);
+        }
+    }
+
+    /**
+     * A strategy of solving.
+     */
+    public static final class Strategy {
+
+        // The names of the sat4j PB solver configurations, found by
+        // reflection rather than by creating a solver of each name
+        private static final Set<String> SOLVERS = Collections.unmodifiableSet(
+                new HashSet<>(Arrays.asList(SolverFactory.instance().solverNames())));
+
+        /**
+         * Solve incrementally with the default solver configuration.
+         */
+        public static final Strategy DEFAULT = new Strategy("Default", 1, 1);
+
+        private final String solver;
+
+        private final int parallelism;
+
+        private final int portfolio;
+
+        /**
+         *
+         * @param solver the name of the sat4j PB solver configuration, one
+         * of {@code SolverFactory.solverNames}.
+         * @param parallelism the number of threads that solve independent
+         * components of the constraints.
+         * @param portfolio the number of threads that race solvers of
+         * different configurations, in which case the solver configuration
+         * is that of the first solver of the portfolio.
+         * @throws IllegalArgumentException if there is no solver 
+         * configuration of the name, or {@code parallelism} or 
+         * {@code portfolio} is less than 1.
+         * @see Sat4JResolver#setSolverParallelism(int) 
+         * @see Sat4JResolver#setSolverPortfolio(int) 
+         */
+        public Strategy(String solver, int parallelism, int portfolio) {
+            if (!SOLVERS.contains(solver) || parallelism < 1 || portfolio < 1) {
+                throw new IllegalArgumentException();
+            }
+            this.solver = solver;
+            this.parallelism = parallelism;
+            this.portfolio = portfolio;
+        }
+
+        public String solver() {
+            return solver;
+        }
+
+        public int parallelism() {
+            return parallelism;
+        }
+
+        public int portfolio() {
+            return portfolio;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s, parallelism=%d, portfolio=%d",
+                    solver, parallelism, portfolio);
+        }
+    }
+
+    private static final class Rule {
+
+        // The limits, otherwise null for the strategy otherwise
+        final Features limits;
+
+        final Strategy strategy;
+
+        final AtomicLong selections = new AtomicLong();
+
+        final AtomicLong nanos = new AtomicLong();
+
+        Rule(Features limits, Strategy strategy) {
+            this.limits = limits;
+            this.strategy = strategy;
+        }
+    }
+
+    private final List<Rule> rules = new CopyOnWriteArrayList<>();
+
+    private final Rule otherwise;
+
+    /**
+     *
+     * @param otherwise the strategy when no rule is selected.
+     */
+    public SolverPolicy(Strategy otherwise) {
+        if (otherwise == null) {
+            throw new NullPointerException();
+        }
+        this.otherwise = new Rule(null, otherwise);
+    }
+
+    /**
+     * A policy that solves small module graphs incrementally, decomposes
+     * larger module graphs into components solved in parallel, and races 
+     * a portfolio of solvers otherwise.
+     */
+    public static SolverPolicy defaultPolicy() {
+        // ## Calibrate the limits from the recorded selections and times
+        int ncpus = Runtime.getRuntime().availableProcessors();
+        return new SolverPolicy(new Strategy("Default", 1, Math.min(ncpus, 6))).
+                when(new Features(64, 4, 8, 16, 2048), Strategy.DEFAULT).
+                when(new Features(4096, 16, 256, 1024, 65536), new Strategy("Default", ncpus, 1));
+    }
+
+    /**
+     * Add a rule, after the rules previously added.
+     *
+     * @param limits the limits of the features selecting the rule.
+     * @param strategy the strategy of the rule.
+     * @return this policy.
+     */
+    public SolverPolicy when(Features limits, Strategy strategy) {
+        if (limits == null || strategy == null) {
+            throw new NullPointerException();
+        }
+        rules.add(new Rule(limits, strategy));
+        return this;
+    }
+
+    /**
+     * @return the number of rules, including the rule otherwise, which is
+     * the last.
+     */
+    public int rules() {
+        return rules.size() + 1;
+    }
+
+    /**
+     * @return the strategy of a rule.
+     */
+    public Strategy strategy(int rule) {
+        return rule(rule).strategy;
+    }
+
+    /**
+     * @return the number of times a rule was selected.
+     */
+    public long getSelectionCount(int rule) {
+        return rule(rule).selections.get();
+    }
+
+    /**
+     * @return the time, in nanoseconds, spent solving with the strategy
+     * of a rule when selected.
+     */
+    public long getSolvingTime(int rule) {
+        return rule(rule).nanos.get();
+    }
+
+    /**
+     * Select the rule for features.
+     *
+     * @return the index of the first rule whose limits are not exceeded,
+     * otherwise the index of the rule otherwise.
+     */
+    int select(Features f) {
+        int rule = 0;
+        for (Rule r : rules) {
+            if (f.within(r.limits)) {
+                break;
+            }
+            rule++;
+        }
+        rule(rule).selections.incrementAndGet();
+        return rule;
+    }
+
+    /**
+     * Record the time spent solving with the strategy of a rule.
+     */
+    void record(int rule, long nanos) {
+        rule(rule).nanos.addAndGet(nanos);
+    }
+
+    private Rule rule(int rule) {
+        return (rule == rules.size()) ? otherwise : rules.get(rule);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < rules(); i++) {
+            Rule r = rule(i);
+            sb.append(i).append(": ").
+                    append(r.limits != null ? r.limits : "otherwise").
+                    append(" -> ").append(r.strategy).
+                    append(String.format(" [%d selections, %d ms]",
+                    r.selections.get(), r.nanos.get() / 1000000)).
+                    append("\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.sat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import org.openjdk.jigsaw.sat.ModuleConstraints.Constraint;
+
+/**
+ * Unit propagation of module constraints, fixing the variables that are 
+ * forced by the constraints regardless of any choice.
+ * <p>
+ * For example a root dependence that matches one module id forces the
+ * module to be resolved, then each view dependence of the module that 
+ * matches one module id forces that module to be resolved, and the
+ * "Only one version" constraints of those modules exclude all other 
+ * versions. Often most of the module graph is fixed before solving, and
+ * only the residual constraints, those not satisfied by the fixed 
+ * variables, need to be solved.
+ * <p>
+ * Constraints are propagated incrementally, as they are encoded.
+ */
+final class UnitPropagator {
+
+    private final ModuleConstraints cs;
+
+    // Variable to value, 1 if satisfied, -1 if not satisfied, 0 if not fixed
+    private byte[] values = new byte[64];
+
+    // Fixed literals, in order of propagation
+    private int[] trail = new int[64];
+
+    private int nFixed;
+
+    // Variable to the indexes of the constraints the variable occurs in
+    private final List<List<Integer>> occurs = new ArrayList<>();
+
+    // The number of constraints propagated
+    private int propagated;
+
+    private boolean conflict;
+
+    UnitPropagator(ModuleConstraints cs) {
+        this.cs = cs;
+    }
+
+    /**
+     * @return the value of a literal, 1 if fixed as satisfied, -1 if fixed
+     * as not satisfied, otherwise 0 if not fixed.
+     */
+    int value(int lit) {
+        int var = Math.abs(lit);
+        int v = (var < values.length) ? values[var] : 0;
+        return (lit < 0) ? -v : v;
+    }
+
+    /**
+     * @return the number of fixed literals.
+     */
+    int nFixed() {
+        return nFixed;
+    }
+
+    /**
+     * @return the fixed literal, in order of propagation.
+     */
+    int fixed(int i) {
+        return trail[i];
+    }
+
+    /**
+     * Propagate the constraints encoded since last propagated.
+     *
+     * @return {@code false} if the constraints conflict, thus there is no
+     * solution, otherwise {@code true}.
+     */
+    boolean propagate() {
+        if (conflict) {
+            return false;
+        }
+
+        List<Constraint> constraints = cs.constraints();
+        if (values.length <= cs.nVars()) {
+            values = Arrays.copyOf(values, Math.max(values.length * 2, cs.nVars() + 1));
+        }
+        while (occurs.size() <= cs.nVars()) {
+            occurs.add(new ArrayList<Integer>(2));
+        }
+
+        Deque<Integer> queue = new ArrayDeque<>();
+        BitSet queued = new BitSet();
+        for (int i = propagated; i < constraints.size(); i++) {
+            for (int lit : constraints.get(i).lits) {
+                occurs.get(Math.abs(lit)).add(i);
+            }
+            queue.add(i);
+            queued.set(i);
+        }
+        propagated = constraints.size();
+
+        while (!queue.isEmpty()) {
+            int i = queue.poll();
+            queued.clear(i);
+            
+            Constraint c = constraints.get(i);
+            int satisfied = 0;
+            int unfixed = 0;
+            for (int lit : c.lits) {
+                int v = value(lit);
+                if (v > 0) {
+                    satisfied++;
+                } else if (v == 0) {
+                    unfixed++;
+                }
+            }
+
+            if (satisfied >= c.degree) {
+                continue;
+            }
+            if (satisfied + unfixed < c.degree) {
+                conflict = true;
+                return false;
+            }
+            if (satisfied + unfixed == c.degree) {
+                // All the literals that are not fixed are forced
+                for (int lit : c.lits) {
+                    if (value(lit) == 0) {
+                        fix(lit);
+                        for (int j : occurs.get(Math.abs(lit))) {
+                            if (!queued.get(j)) {
+                                queue.add(j);
+                                queued.set(j);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private void fix(int lit) {
+        values[Math.abs(lit)] = (byte) ((lit > 0) ? 1 : -1);
+        if (nFixed == trail.length) {
+            trail = Arrays.copyOf(trail, nFixed * 2);
+        }
+        trail[nFixed++] = lit;
+    }
+
+    /**
+     * Get the residual of a constraint, the literals that are not fixed.
+     *
+     * @return the literals that are not fixed, and whose number of 
+     * satisfied literals is reduced by the satisfied fixed literals, 
+     * otherwise {@code null} if the constraint is satisfied by the fixed
+     * literals.
+     */
+    Constraint residual(Constraint c) {
+        int satisfied = 0;
+        int unfixed = 0;
+        for (int lit : c.lits) {
+            int v = value(lit);
+            if (v > 0) {
+                satisfied++;
+            } else if (v == 0) {
+                unfixed++;
+            }
+        }
+        if (satisfied >= c.degree) {
+            return null;
+        }
+        if (satisfied == 0 && unfixed == c.lits.length) {
+            return c;
+        }
+
+        int[] lits = new int[unfixed];
+        int i = 0;
+        for (int lit : c.lits) {
+            if (value(lit) == 0) {
+                lits[i++] = lit;
+            }
+        }
+        return new Constraint(c.label, c.degree - satisfied, lits);
+    }
+}
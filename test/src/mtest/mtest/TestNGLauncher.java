@@ -22,14 +22,28 @@
  */
 package mtest;
 
+import org.openjdk.jigsaw.test.sat.AsyncResolverTest;
+import org.openjdk.jigsaw.test.sat.BatchResolverTest;
+import org.openjdk.jigsaw.test.sat.BudgetResolverTest;
+import org.openjdk.jigsaw.test.sat.CachingCatalogTest;
+import org.openjdk.jigsaw.test.sat.CheckResolvableTest;
+import org.openjdk.jigsaw.test.sat.HintResolverTest;
 import org.openjdk.jigsaw.test.sat.JDKResolverTest;
 import org.openjdk.jigsaw.test.sat.NoMatchResolverTest;
 import org.openjdk.jigsaw.test.sat.OptionalResolverTest;
+import org.openjdk.jigsaw.test.sat.ParallelSolverResolverTest;
+import org.openjdk.jigsaw.test.sat.ParallelSnapshotResolverTest;
+import org.openjdk.jigsaw.test.sat.ParallelTraversalResolverTest;
 import org.openjdk.jigsaw.test.sat.PermitResolverTest;
+import org.openjdk.jigsaw.test.sat.PolicyResolverTest;
+import org.openjdk.jigsaw.test.sat.PortfolioResolverTest;
 import org.openjdk.jigsaw.test.sat.PuzzlersTest;
 import org.openjdk.jigsaw.test.sat.RequiresResolverTest;
+import org.openjdk.jigsaw.test.sat.ResultCacheResolverTest;
 import org.openjdk.jigsaw.test.sat.ServiceDependencesTest;
 import org.openjdk.jigsaw.test.sat.ServiceResolverTest;
+import org.openjdk.jigsaw.test.sat.SinglePhaseServiceResolverTest;
+import org.openjdk.jigsaw.test.sat.SnapshotResolverTest;
 import org.openjdk.jigsaw.test.sat.ViewAliasResolverTest;
 import org.testng.TestListenerAdapter;
 import org.testng.TestNG;
@@ -41,14 +55,28 @@ public class TestNGLauncher {
         TestNG testng = new TestNG();
         testng.setTestClasses(new Class[]{
                     ServiceDependencesTest.class,
+                    CachingCatalogTest.class,
                     RequiresResolverTest.class,
+                    ParallelTraversalResolverTest.class,
                     ViewAliasResolverTest.class,
+                    SnapshotResolverTest.class,
+                    ParallelSnapshotResolverTest.class,
                     OptionalResolverTest.class,
                     NoMatchResolverTest.class,
                     PermitResolverTest.class,
                     JDKResolverTest.class,
                     ServiceResolverTest.class,
+                    SinglePhaseServiceResolverTest.class,
                     PuzzlersTest.class,
+                    ResultCacheResolverTest.class,
+                    BatchResolverTest.class,
+                    AsyncResolverTest.class,
+                    BudgetResolverTest.class,
+                    ParallelSolverResolverTest.class,
+                    PortfolioResolverTest.class,
+                    PolicyResolverTest.class,
+                    CheckResolvableTest.class,
+                    HintResolverTest.class,
                 });
         testng.addListener(tla);
         testng.run();
@@ -58,7 +58,7 @@ public abstract class AbstractResolverTest {
                 new ArrayList<>(expectedMids));
     }
     
-    protected void fail(Collection<ModuleIdQuery> midqs) {
+    protected ResolverException fail(Collection<ModuleIdQuery> midqs) {
         ResolverException caught = null;
         Set<ModuleId> mids = null;
         try {
@@ -69,6 +69,7 @@ public abstract class AbstractResolverTest {
         }
         Assert.assertNotNull(caught, 
                 "Resolver should fail but passed with the solution " + mids);
+        return caught;
     }
 
     protected MockLibrary add(ModuleInfoBuilder mib) {
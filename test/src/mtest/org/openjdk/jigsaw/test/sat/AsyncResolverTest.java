@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.test.sat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jigsaw.sat.ResolverException;
+import org.openjdk.jigsaw.sat.ResolverResult;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class AsyncResolverTest extends AbstractResolverTest {
+
+    static class CountingExecutor implements Executor {
+
+        final AtomicInteger n = new AtomicInteger();
+
+        @Override
+        public void execute(Runnable r) {
+            n.incrementAndGet();
+            r.run();
+        }
+    }
+
+    @Test
+    public void testResolve() throws Exception {
+        add(module("x@1").
+                requires("y").
+                requiresService("si"));
+
+        add(module("y@1"));
+
+        add(module("y@2"));
+
+        add(module("b@1").
+                providesService("si", "siImpl"));
+
+        CompletableFuture<ResolverResult> f = r.resolveAsync(queryIds("x@1"));
+        Assert.assertEquals(f.get().resolvedModuleIds(), moduleIds("x@1", "y@2", "b@1"));
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        add(module("x@1").
+                requires("y@2"));
+
+        add(module("y@1"));
+
+        CompletableFuture<ResolverResult> f = r.resolveAsync(queryIds("x@1"));
+        try {
+            f.get();
+            Assert.fail("Resolver should fail");
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof ResolverException);
+        }
+    }
+
+    @Test
+    public void testExecutors() throws Exception {
+        add(module("x@1").
+                requires("y"));
+
+        add(module("y@1"));
+
+        CountingExecutor traversal = new CountingExecutor();
+        CountingExecutor solver = new CountingExecutor();
+        r.setSolverExecutor(solver);
+
+        ResolverResult rr = r.resolveAsync(queryIds("x@1"), traversal).get();
+        Assert.assertEquals(rr.resolvedModuleIds(), moduleIds("x@1", "y@1"));
+        Assert.assertEquals(traversal.n.get(), 1);
+        Assert.assertEquals(solver.n.get(), 1);
+
+        // Cached results are not solved
+        Assert.assertSame(r.resolveAsync(queryIds("x@1"), traversal).get(), rr);
+        Assert.assertEquals(traversal.n.get(), 2);
+        Assert.assertEquals(solver.n.get(), 1);
+    }
+
+    @Test
+    public void testCancelled() throws Exception {
+        add(module("x@1"));
+
+        CountingExecutor solver = new CountingExecutor();
+        r.setSolverExecutor(solver);
+
+        final Runnable[] traversal = new Runnable[1];
+        CompletableFuture<ResolverResult> f = r.resolveAsync(queryIds("x@1"), new Executor() {
+            @Override
+            public void execute(Runnable r) {
+                traversal[0] = r;
+            }
+        });
+        Assert.assertTrue(f.cancel(false));
+
+        traversal[0].run();
+        Assert.assertTrue(f.isCancelled());
+        Assert.assertEquals(solver.n.get(), 0);
+    }
+}
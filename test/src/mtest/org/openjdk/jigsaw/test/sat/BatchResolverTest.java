@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.test.sat;
+
+import java.lang.module.ModuleId;
+import java.lang.module.ModuleIdQuery;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import org.openjdk.jigsaw.sat.ResolverOutcome;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class BatchResolverTest extends AbstractResolverTest {
+
+    @Test
+    public void testShared() {
+        add(module("x@1").
+                requires("y"));
+
+        add(module("z@1").
+                requires("y"));
+
+        add(module("y@1").
+                requires("w"));
+
+        add(module("w@1"));
+
+        resolveAll(Arrays.asList(
+                queryIds("x@1"),
+                queryIds("z@1"),
+                queryIds("z@1", "x@1")),
+                moduleIds("x@1", "y@1", "w@1"),
+                moduleIds("z@1", "y@1", "w@1"),
+                moduleIds("z@1", "y@1", "w@1", "x@1"));
+    }
+
+    @Test
+    public void testVersions() {
+        add(module("x@1").
+                requires("y@<2"));
+
+        add(module("z@1").
+                requires("y"));
+
+        add(module("y@1"));
+
+        add(module("y@2"));
+
+        resolveAll(Arrays.asList(
+                queryIds("x@1"),
+                queryIds("z@1"),
+                queryIds("x@1", "z@1")),
+                moduleIds("x@1", "y@1"),
+                moduleIds("z@1", "y@2"),
+                moduleIds("x@1", "y@1", "z@1"));
+    }
+
+    @Test
+    public void testFailure() {
+        add(module("x@1").
+                requires("y@1"));
+
+        add(module("z@1").
+                requires("y@2"));
+
+        add(module("y@1"));
+
+        add(module("y@2"));
+
+        resolveAll(Arrays.asList(
+                queryIds("x@1"),
+                queryIds("x@1", "z@1"),
+                queryIds("z@1"),
+                queryIds("u@1")),
+                moduleIds("x@1", "y@1"),
+                null,
+                moduleIds("z@1", "y@2"),
+                null);
+    }
+
+    @Test
+    public void testOptional() {
+        add(module("x@1").
+                requiresOptional("y"));
+
+        add(module("z@1"));
+
+        add(module("y@1"));
+
+        resolveAll(Arrays.asList(
+                queryIds("z@1"),
+                queryIds("x@1")),
+                moduleIds("z@1"),
+                moduleIds("x@1", "y@1"));
+    }
+
+    @Test
+    public void testServices() {
+        add(module("x@1").
+                requiresService("si"));
+
+        add(module("y@1"));
+
+        add(module("b@1").
+                requires("c@1").
+                providesService("si", "siImpl"));
+
+        add(module("c@1"));
+
+        resolveAll(Arrays.asList(
+                queryIds("x@1"),
+                queryIds("y@1"),
+                queryIds("y@1", "x@1")),
+                moduleIds("x@1", "b@1", "c@1"),
+                moduleIds("y@1"),
+                moduleIds("y@1", "x@1", "b@1", "c@1"));
+    }
+
+    @Test
+    public void testSinglePhaseServices() {
+        r.setSinglePhase(true);
+
+        testServices();
+    }
+
+    @Test
+    public void testSameAsResolve() {
+        add(module("x@1").
+                requires("y").
+                requires("z"));
+
+        add(module("y@1").
+                requires("z@1"));
+
+        add(module("y@2").
+                requires("z@2"));
+
+        add(module("z@1"));
+
+        add(module("z@2"));
+
+        add(module("u@1").
+                requires("z@<2"));
+
+        List<Collection<ModuleIdQuery>> midqss = Arrays.asList(
+                queryIds("x@1"),
+                queryIds("u@1"),
+                queryIds("u@1", "x@1"),
+                queryIds("y@1"));
+
+        r.setResultCacheSize(0);
+        List<ResolverOutcome> outcomes = r.resolveAll(midqss);
+        for (int i = 0; i < midqss.size(); i++) {
+            Assert.assertEquals(
+                    new ArrayList<>(outcomes.get(i).result().resolvedModuleIds()),
+                    new ArrayList<>(r.resolve(midqss.get(i)).resolvedModuleIds()));
+        }
+    }
+
+    @Test
+    public void testCached() {
+        add(module("x@1"));
+
+        add(module("y@1"));
+
+        List<ResolverOutcome> outcomes = r.resolveAll(Arrays.asList(
+                queryIds("x@1"),
+                queryIds("y@1")));
+        Assert.assertSame(r.resolve(queryIds("y@1")), outcomes.get(1).result());
+    }
+
+    @Test
+    public void testParallel() {
+        r.setBatchParallelism(2);
+
+        testFailure();
+    }
+
+    void resolveAll(List<Collection<ModuleIdQuery>> midqss, Set<ModuleId>... expectedMidss) {
+        List<ResolverOutcome> outcomes = r.resolveAll(midqss);
+        Assert.assertEquals(outcomes.size(), expectedMidss.length);
+        for (int i = 0; i < expectedMidss.length; i++) {
+            ResolverOutcome o = outcomes.get(i);
+            if (expectedMidss[i] == null) {
+                Assert.assertFalse(o.isResolved(),
+                        "Resolver should fail but passed with the solution " + o);
+                Assert.assertNotNull(o.exception());
+            } else {
+                Assert.assertTrue(o.isResolved(), o.toString());
+                Assert.assertEquals(new ArrayList<>(o.result().resolvedModuleIds()),
+                        new ArrayList<>(expectedMidss[i]));
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.test.sat;
+
+import org.openjdk.jigsaw.sat.ResolverResult;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class BudgetResolverTest extends AbstractResolverTest {
+
+    // Modules whose newest versions conflict with each other, so that
+    // solutions are improved upon
+    void addConflicting(int n) {
+        ModuleInfoBuilder x = module("x@1");
+        for (int i = 0; i < n; i++) {
+            x.requires("m" + i);
+        }
+        add(x);
+
+        for (int i = 0; i < n; i++) {
+            for (int v = 1; v <= 4; v++) {
+                ModuleInfoBuilder m = module("m" + i + "@" + v);
+                // Newer versions require older versions of the next module
+                if (v > 1) {
+                    m.requires("m" + ((i + 1) % n) + "@<" + v);
+                }
+                add(m);
+            }
+        }
+    }
+
+    // Pigeons that each require a hole of their own, unless an older
+    // version is selected that requires none. One pigeon more than there
+    // are holes, so that proving no better solution exists requires search
+    // that propagation alone cannot do
+    void addPigeonhole(int holes) {
+        ModuleInfoBuilder x = module("x@1");
+        for (int p = 0; p <= holes; p++) {
+            x.requires("p" + p);
+        }
+        add(x);
+
+        for (int p = 0; p <= holes; p++) {
+            add(module("p" + p + "@1"));
+            for (int h = 0; h < holes; h++) {
+                // Newer versions are placed in a hole, occupied by the
+                // version of the hole that identifies the pigeon
+                add(module("p" + p + "@" + (h + 2)).requires("h" + h + "@" + (p + 1)));
+            }
+        }
+
+        for (int h = 0; h < holes; h++) {
+            for (int p = 0; p <= holes; p++) {
+                add(module("h" + h + "@" + (p + 1)));
+            }
+        }
+    }
+
+    @Test
+    public void testOptimal() {
+        addConflicting(8);
+
+        ResolverResult rr = r.resolve(queryIds("x@1"));
+        Assert.assertTrue(rr.isOptimal());
+        Assert.assertEquals(rr.resolvedModuleIds(), moduleIds("x@1",
+                "m0@4", "m1@3", "m2@1", "m3@4", "m4@1", "m5@4", "m6@3", "m7@1"));
+    }
+
+    @Test
+    public void testConflictBudget() {
+        addPigeonhole(6);
+
+        r.setSolverConflictBudget(1);
+        ResolverResult rr = r.resolve(queryIds("x@1"));
+        Assert.assertFalse(rr.isOptimal());
+        Assert.assertTrue(rr.resolvedModuleIds().contains(ms.parseModuleId("x@1")));
+    }
+
+    @Test
+    public void testNotOptimalNotCached() {
+        addPigeonhole(6);
+
+        r.setSolverConflictBudget(1);
+        ResolverResult rr = r.resolve(queryIds("x@1"));
+        Assert.assertFalse(rr.isOptimal());
+        Assert.assertNotSame(r.resolve(queryIds("x@1")), rr);
+
+        r.setSolverConflictBudget(0);
+        rr = r.resolve(queryIds("x@1"));
+        Assert.assertTrue(rr.isOptimal());
+        Assert.assertSame(r.resolve(queryIds("x@1")), rr);
+    }
+
+    @Test
+    public void testTimeBudget() {
+        addConflicting(8);
+
+        r.setSolverTimeout(60000);
+        ResolverResult rr = r.resolve(queryIds("x@1"));
+        Assert.assertTrue(rr.isOptimal());
+        Assert.assertTrue(rr.resolvedModuleIds().contains(ms.parseModuleId("x@1")));
+    }
+}
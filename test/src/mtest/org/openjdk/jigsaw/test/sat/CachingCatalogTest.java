@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.test.sat;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.module.ModuleInfo;
+import java.lang.module.ModuleSystem;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.Collections;
+import org.openjdk.jigsaw.JigsawModuleSystem;
+import org.openjdk.jigsaw.sat.CachingCatalog;
+import org.openjdk.jigsaw.sat.Sat4JResolver;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class CachingCatalogTest {
+
+    protected ModuleSystem ms = JigsawModuleSystem.instance();
+
+    protected MockLibrary mlib;
+
+    protected CachingCatalog cc;
+
+    @BeforeMethod
+    void before() {
+        mlib = new MockLibrary();
+        cc = new CachingCatalog(mlib, 2);
+    }
+
+    @Test
+    public void readModuleInfo() throws IOException {
+        mlib.add(ModuleInfoBuilder.module("a@1"));
+
+        Assert.assertSame(
+                cc.readModuleInfo(ms.parseModuleId("a@1")),
+                cc.readModuleInfo(ms.parseModuleId("a@1")));
+        Assert.assertNull(cc.readModuleInfo(ms.parseModuleId("b@1")));
+
+        Assert.assertEquals(cc.getHitCount(), 1);
+        Assert.assertEquals(cc.getMissCount(), 2);
+        Assert.assertEquals(cc.getHitRate(), 1.0 / 3);
+    }
+
+    @Test
+    public void eviction() throws IOException {
+        mlib.add(ModuleInfoBuilder.module("a@1"));
+        mlib.add(ModuleInfoBuilder.module("b@1"));
+        mlib.add(ModuleInfoBuilder.module("c@1"));
+
+        cc.readModuleInfo(ms.parseModuleId("a@1"));
+        cc.readModuleInfo(ms.parseModuleId("b@1"));
+        cc.readModuleInfo(ms.parseModuleId("c@1"));
+        Assert.assertEquals(cc.getMissCount(), 3);
+
+        // At most 2 module infos are cached
+        cc.readModuleInfo(ms.parseModuleId("a@1"));
+        cc.readModuleInfo(ms.parseModuleId("b@1"));
+        cc.readModuleInfo(ms.parseModuleId("c@1"));
+        Assert.assertTrue(cc.getMissCount() > 3);
+    }
+
+    @Test
+    public void refresh() throws Exception {
+        final File dir = Files.createTempDirectory("mock-library").toFile();
+        File aDir = new File(dir, "a");
+        try {
+            mlib = new MockLibrary() {
+                @Override
+                public URI location() {
+                    return dir.toURI();
+                }
+            };
+            cc = new CachingCatalog(mlib);
+            mlib.add(ModuleInfoBuilder.module("a@1").requires("b@1"));
+            mlib.add(ModuleInfoBuilder.module("b@1"));
+
+            cc.refresh();
+            ModuleInfo mi = cc.readModuleInfo(ms.parseModuleId("a@1"));
+            cc.refresh();
+            Assert.assertSame(cc.readModuleInfo(ms.parseModuleId("a@1")), mi);
+
+            // a@1 installed again with different module info, modifying
+            // the directory of module a
+            mlib.add(ModuleInfoBuilder.module("a@1"));
+            Assert.assertTrue(aDir.mkdir());
+
+            cc.refresh();
+            Assert.assertTrue(cc.readModuleInfo(ms.parseModuleId("a@1")).requiresModules().isEmpty());
+        } finally {
+            aDir.delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void sharedBetweenResolves() throws Exception {
+        mlib.add(ModuleInfoBuilder.module("a@1").requires("b@1"));
+        mlib.add(ModuleInfoBuilder.module("b@1"));
+
+        cc = new CachingCatalog(mlib);
+        Sat4JResolver r = new Sat4JResolver(mlib, cc);
+        // Resolve again rather than return the cached result
+        r.setResultCacheSize(0);
+        r.resolve(Collections.singleton(ms.parseModuleIdQuery("a@1")));
+        long misses = cc.getMissCount();
+
+        r.resolve(Collections.singleton(ms.parseModuleIdQuery("a@1")));
+        Assert.assertEquals(cc.getMissCount(), misses);
+        Assert.assertTrue(cc.getHitCount() > 0);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.test.sat;
+
+
+import java.lang.module.ModuleId;
+import java.lang.module.ModuleIdQuery;
+import java.util.Collection;
+import java.util.Set;
+import org.openjdk.jigsaw.sat.ResolverException;
+import org.openjdk.jigsaw.sat.ResolverOutcome;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class CheckResolvableTest extends AbstractResolverTest {
+
+    @Test
+    public void testResolvable() {
+        add(module("x@1").
+                requires("y@<3").
+                requires("z@1"));
+
+        add(module("z@1").
+                requires("y@>=2"));
+
+        add(module("y@1"));
+        add(module("y@2"));
+        add(module("y@3"));
+
+        Set<ModuleId> mids = check(queryIds("x@1"));
+        Assert.assertEquals(mids, moduleIds("x@1", "y@2", "z@1"));
+    }
+
+    @Test
+    public void testWitness() {
+        add(module("x@1").
+                requires("y@>=1").
+                requires("z@>=1"));
+
+        add(module("y@1"));
+        add(module("y@2"));
+
+        add(module("z@1").requires("y@1"));
+        add(module("z@2"));
+
+        Set<ModuleId> mids = check(queryIds("x@1"));
+        Assert.assertTrue(mids.contains(ms.parseModuleId("x@1")));
+        Assert.assertEquals(mids.size(), 3);
+        if (mids.contains(ms.parseModuleId("z@1"))) {
+            Assert.assertTrue(mids.contains(ms.parseModuleId("y@1")));
+        }
+
+        // Versions are preferred when resolving
+        resolve(queryIds("x@1"), moduleIds("x@1", "y@2", "z@2"));
+    }
+
+    @Test
+    public void testNotResolvable() {
+        add(module("x@1").
+                requires("y@<2").
+                requires("z@1"));
+
+        add(module("z@1").
+                requires("y@>=2"));
+
+        add(module("y@1"));
+        add(module("y@2"));
+
+        ResolverOutcome ro = r.checkResolvable(queryIds("x@1"));
+        Assert.assertFalse(ro.isResolved());
+        Assert.assertNotNull(ro.exception());
+        fail(queryIds("x@1"));
+    }
+
+    @Test
+    public void testCachedFailure() {
+        r.setResultCacheSize(16);
+
+        add(module("x@1").
+                requires("y@2"));
+
+        add(module("y@1"));
+
+        Assert.assertFalse(r.checkResolvable(queryIds("x@1")).isResolved());
+        Assert.assertFalse(r.checkResolvable(queryIds("x@1")).isResolved());
+        fail(queryIds("x@1"));
+    }
+
+    private Set<ModuleId> check(Collection<ModuleIdQuery> midqs) {
+        ResolverOutcome ro = r.checkResolvable(midqs);
+        Assert.assertTrue(ro.isResolved(), String.valueOf(ro.exception()));
+        try {
+            Assert.assertFalse(ro.result().isOptimal());
+            return ro.result().resolvedModuleIds();
+        } catch (ResolverException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+}
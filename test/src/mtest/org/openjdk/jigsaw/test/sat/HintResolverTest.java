@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.test.sat;
+
+
+import java.lang.module.ModuleId;
+import java.lang.module.ModuleIdQuery;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Set;
+import org.openjdk.jigsaw.sat.ResolverResult;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class HintResolverTest extends AbstractResolverTest {
+
+    @Test
+    public void testUnchanged() {
+        add(module("x@1").
+                requires("y@>=1").
+                requires("z@1"));
+
+        add(module("z@1").
+                requires("y@<3"));
+
+        add(module("y@1"));
+        add(module("y@2"));
+        add(module("y@3"));
+
+        ResolverResult hint = r.resolve(queryIds("x@1"));
+
+        resolve(queryIds("x@1"), hint, moduleIds("x@1", "y@2", "z@1"));
+    }
+
+    @Test
+    public void testNewerVersion() {
+        add(module("x@1").
+                requires("y@>=1").
+                requires("z@>=1"));
+
+        add(module("z@1").
+                requires("y@<3"));
+
+        add(module("y@1"));
+        add(module("y@2"));
+        add(module("y@3"));
+
+        ResolverResult hint = r.resolve(queryIds("x@1"));
+        Assert.assertEquals(hint.resolvedModuleIds(), moduleIds("x@1", "y@2", "z@1"));
+
+        add(module("z@2"));
+
+        resolve(queryIds("x@1"), hint, moduleIds("x@1", "y@3", "z@2"));
+    }
+
+    @Test
+    public void testNotSolution() {
+        add(module("x@1").
+                requires("y@>=1").
+                requires("z@>=1"));
+
+        add(module("z@1").
+                requires("y@<3"));
+
+        add(module("y@1"));
+        add(module("y@2"));
+
+        ResolverResult hint = r.resolve(queryIds("x@1"));
+        Assert.assertEquals(hint.resolvedModuleIds(), moduleIds("x@1", "y@2", "z@1"));
+
+        // The hinted modules conflict with the new modules
+        add(module("z@2").
+                requires("y@>=3"));
+        add(module("y@3"));
+
+        r.setSinglePhase(true);
+        resolve(queryIds("x@1"), hint, moduleIds("x@1", "y@3", "z@2"));
+    }
+
+    private void resolve(Collection<ModuleIdQuery> midqs, ResolverResult hint,
+            Set<ModuleId> expectedMids) {
+        Set<ModuleId> mids = r.resolve(midqs, hint).resolvedModuleIds();
+        Assert.assertEquals(new ArrayList<>(mids), new ArrayList<>(expectedMids));
+
+        // The hint does not change the result
+        Assert.assertEquals(r.resolve(midqs).resolvedModuleIds(), mids);
+    }
+}
@@ -22,6 +22,8 @@
  */
 package org.openjdk.jigsaw.test.sat;
 
+import org.openjdk.jigsaw.sat.ResolverException;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
 public class NoMatchResolverTest extends AbstractResolverTest {
@@ -63,4 +65,27 @@ public class NoMatchResolverTest extends AbstractResolverTest {
 
         fail(queryIds("a@1", "c@1"));
     }
+
+    @Test
+    public void testAbsentExplanation() {
+        add(module("a@1").
+                requires("b@1"));
+
+        ResolverException ex = fail(queryIds("a@1"));
+        boolean explained = false;
+        for (String why : ex.why()) {
+            explained |= why.endsWith("of module a@1, matches no modules");
+        }
+        Assert.assertTrue(explained, ex.why().toString());
+    }
+
+    @Test
+    public void testNoExplanation() {
+        add(module("a@1").
+                requires("b@1"));
+
+        r.setExplanationTimeout(0);
+        ResolverException ex = fail(queryIds("a@1"));
+        Assert.assertTrue(ex.why().isEmpty());
+    }
 }
@@ -128,4 +128,24 @@ public class OptionalResolverTest extends AbstractResolverTest {
 
         fail(queryIds("a@1"));
     }
+
+    @Test
+    public void testOptionalsBeforeVersions() {
+        add(module("a@1").
+                requiresOptional("b@1").
+                requiresOptional("c@1").
+                requiresOptional("d@1").
+                requires("e@>=1"));
+
+        add(module("b@1").requires("e@1"));
+        add(module("c@1").requires("e@1"));
+        add(module("d@1").requires("e@1"));
+
+        add(module("e@1"));
+        add(module("e@2"));
+        add(module("e@3"));
+        add(module("e@4"));
+
+        resolve(queryIds("a@1"), moduleIds("a@1", "b@1", "e@1", "c@1", "d@1"));
+    }
 }
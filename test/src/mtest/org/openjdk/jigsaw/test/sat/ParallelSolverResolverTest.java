@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.test.sat;
+
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Requires resolver tests with independent components of the constraints
+ * solved in parallel.
+ */
+public class ParallelSolverResolverTest extends RequiresResolverTest {
+
+    @BeforeMethod
+    void parallelSolver() {
+        r.setSolverParallelism(4);
+    }
+
+    @Test
+    public void testIndependentComponents() {
+        add(module("x@1").requires("a@<3").requires("b@>=1"));
+
+        add(module("y@1").requires("c@>=2"));
+
+        add(module("a@1")).
+                add(module("a@2")).
+                add(module("a@3"));
+
+        add(module("b@1")).
+                add(module("b@2"));
+
+        add(module("c@1")).
+                add(module("c@2")).
+                add(module("c@3"));
+
+        resolve(queryIds("x@1", "y@1"),
+                moduleIds("x@1", "a@2", "b@2", "y@1", "c@3"));
+    }
+
+    @Test
+    public void testIndependentComponentFail() {
+        add(module("x@1").requires("a@<3"));
+
+        add(module("y@1").requires("c@>=2").requires("d@1"));
+
+        add(module("a@1")).
+                add(module("a@2"));
+
+        add(module("c@2").requires("d@2")).
+                add(module("c@3").requires("d@2"));
+
+        add(module("d@1")).
+                add(module("d@2"));
+
+        fail(queryIds("x@1", "y@1"));
+    }
+}
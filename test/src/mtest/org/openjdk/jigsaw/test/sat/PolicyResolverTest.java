@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.test.sat;
+
+
+import org.openjdk.jigsaw.sat.SolverPolicy;
+import org.openjdk.jigsaw.sat.SolverPolicy.Features;
+import org.openjdk.jigsaw.sat.SolverPolicy.Strategy;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Requires resolver tests with the strategy of solving selected by a policy.
+ */
+public class PolicyResolverTest extends RequiresResolverTest {
+
+    SolverPolicy policy;
+
+    @BeforeMethod
+    void policy() {
+        policy = new SolverPolicy(new Strategy("Default", 1, 3)).
+                when(new Features(2, 1, 0, 0, 16), new Strategy("ResolutionGlucose21", 1, 1)).
+                when(new Features(8, 4, 4, 4, 256), new Strategy("CuttingPlanes", 4, 1));
+        r.setSolverPolicy(policy);
+    }
+
+    @Test
+    public void testSelection() {
+        add(module("x@1").requires("y@>=1"));
+
+        add(module("y@1")).
+                add(module("y@2")).
+                add(module("y@3"));
+
+        resolve(queryIds("x@1"), moduleIds("x@1", "y@3"));
+
+        Assert.assertEquals(policy.rules(), 3);
+        Assert.assertEquals(policy.getSelectionCount(0), 0);
+        Assert.assertEquals(policy.getSelectionCount(1), 1);
+        Assert.assertEquals(policy.getSelectionCount(2), 0);
+        Assert.assertTrue(policy.getSolvingTime(1) > 0);
+        Assert.assertEquals(policy.strategy(1).solver(), "CuttingPlanes");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownSolver() {
+        new Strategy("Unknown", 1, 1);
+    }
+}
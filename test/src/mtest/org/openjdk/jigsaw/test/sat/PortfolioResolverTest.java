@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.test.sat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import org.sat4j.specs.TimeoutException;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Requires resolver tests with a portfolio of solvers racing to solve.
+ */
+public class PortfolioResolverTest extends RequiresResolverTest {
+
+    @BeforeMethod
+    void portfolio() {
+        r.setSolverPortfolio(6);
+    }
+
+    /**
+     * Runs the first solver, and holds the other solvers.
+     */
+    static class HoldingExecutor implements Executor {
+
+        final List<Runnable> held = new ArrayList<>();
+
+        boolean started;
+
+        @Override
+        public synchronized void execute(Runnable r) {
+            if (!started) {
+                started = true;
+                r.run();
+            } else {
+                held.add(r);
+            }
+        }
+    }
+
+    @Test
+    public void testLosersCancelled() throws Exception {
+        add(module("x@1").
+                requires("y"));
+
+        add(module("y@1"));
+
+        add(module("y@2"));
+
+        HoldingExecutor portfolio = new HoldingExecutor();
+        r.setSolverPortfolioExecutor(portfolio);
+
+        // The first solver wins without waiting for the others
+        resolve(queryIds("x@1"), moduleIds("x@1", "y@2"));
+        Assert.assertEquals(portfolio.held.size(), 5);
+
+        // The others start once the race is won, and are cancelled rather
+        // than solve
+        for (Runnable solver : portfolio.held) {
+            solver.run();
+            try {
+                ((Future<?>) solver).get();
+                Assert.fail("Solver should be cancelled");
+            } catch (ExecutionException ex) {
+                Assert.assertTrue(ex.getCause() instanceof TimeoutException);
+                Assert.assertEquals(ex.getCause().getMessage(), "Cancelled");
+            }
+        }
+    }
+}
@@ -22,6 +22,8 @@
  */
 package org.openjdk.jigsaw.test.sat;
 
+import org.openjdk.jigsaw.sat.ResolverException;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
 public class RequiresResolverTest extends AbstractResolverTest {
@@ -134,4 +136,34 @@ public class RequiresResolverTest extends AbstractResolverTest {
         resolve(queryIds("x@1"), 
                 moduleIds("x@1", "y@1"));        
     }
+    
+    @Test
+    public void testForcedFail() {
+        add(module("x@1").requires("y@1").requires("z@1"));
+        
+        add(module("z@1").requires("y@2"));
+        
+        add(module("y@1"));
+        
+        add(module("y@2"));
+        
+        ResolverException ex = fail(queryIds("x@1"));
+        Assert.assertFalse(ex.why().isEmpty());
+    }
+    
+    @Test
+    public void testForcedAndChosen() {
+        add(module("x@1").requires("y@1").requires("w"));
+        
+        add(module("w@1"));
+        
+        add(module("w@2").requires("y@2"));
+        
+        add(module("y@1"));
+        
+        add(module("y@2"));
+        
+        resolve(queryIds("x@1"), 
+                moduleIds("x@1", "y@1", "w@1"));        
+    }
 }
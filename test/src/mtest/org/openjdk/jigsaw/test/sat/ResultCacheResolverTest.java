@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.test.sat;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.openjdk.jigsaw.sat.ResolverException;
+import org.openjdk.jigsaw.sat.ResolverResult;
+import org.openjdk.jigsaw.sat.Sat4JResolver;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ResultCacheResolverTest extends AbstractResolverTest {
+
+    @Test
+    public void testCachedResult() {
+        add(module("x@1").
+                requires("y"));
+
+        add(module("y@1"));
+
+        ResolverResult rr = r.resolve(queryIds("x@1"));
+        Assert.assertSame(r.resolve(queryIds("x@1")), rr);
+        Assert.assertSame(r.resolve(Arrays.asList(
+                ms.parseModuleIdQuery("x@1"), ms.parseModuleIdQuery("x@1"))), rr);
+    }
+
+    @Test
+    public void testCachedResultOrder() {
+        add(module("x@1"));
+
+        add(module("y@1"));
+
+        resolve(queryIds("x@1", "y@1"), moduleIds("x@1", "y@1"));
+        resolve(queryIds("y@1", "x@1"), moduleIds("y@1", "x@1"));
+    }
+
+    @Test
+    public void testCachedResultInvalidated() {
+        add(module("x@1").
+                requires("y"));
+
+        add(module("y@1"));
+
+        resolve(queryIds("x@1"), moduleIds("x@1", "y@1"));
+
+        add(module("y@2"));
+
+        resolve(queryIds("x@1"), moduleIds("x@1", "y@2"));
+    }
+
+    @Test
+    public void testCachedResultInvalidatedModuleInfoChanged() throws IOException {
+        final File dir = Files.createTempDirectory("mock-library").toFile();
+        try {
+            mlib = new MockLibrary() {
+                @Override
+                public URI location() {
+                    return dir.toURI();
+                }
+            };
+            r = new Sat4JResolver(mlib);
+
+            add(module("x@1").
+                    requires("y@1"));
+
+            add(module("y@1"));
+
+            add(module("y@2"));
+
+            resolve(queryIds("x@1"), moduleIds("x@1", "y@1"));
+
+            // x@1 installed again with different module info, modifying
+            // the directory of module x
+            add(module("x@1").
+                    requires("y"));
+            Assert.assertTrue(new File(dir, "x").mkdir());
+
+            resolve(queryIds("x@1"), moduleIds("x@1", "y@2"));
+        } finally {
+            for (File f : dir.listFiles()) {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void testNotCached() {
+        add(module("x@1"));
+
+        r.setResultCacheSize(0);
+
+        ResolverResult rr = r.resolve(queryIds("x@1"));
+        Assert.assertNotSame(r.resolve(queryIds("x@1")), rr);
+    }
+
+    @Test
+    public void testCachedFailure() {
+        add(module("x@1").
+                requires("y@2"));
+
+        add(module("y@1"));
+
+        ResolverException ex = fail(queryIds("x@1"));
+        Assert.assertFalse(ex.why().isEmpty());
+
+        ResolverException cached = fail(queryIds("x@1"));
+        Assert.assertNotSame(cached, ex);
+        Assert.assertEquals(cached.why(), ex.why());
+    }
+
+    @Test
+    public void testCachedFailureInvalidated() {
+        add(module("x@1").
+                requires("y@2"));
+
+        add(module("y@1"));
+
+        fail(queryIds("x@1"));
+
+        add(module("y@2"));
+
+        resolve(queryIds("x@1"), moduleIds("x@1", "y@2"));
+    }
+}
@@ -22,13 +22,20 @@
  */
 package org.openjdk.jigsaw.test.sat;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.module.ModuleId;
 import java.lang.module.ModuleIdQuery;
 import java.lang.module.ModuleSystem;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 import org.openjdk.jigsaw.JigsawModuleSystem;
+import org.openjdk.jigsaw.sat.CachingCatalog;
 import org.openjdk.jigsaw.sat.ServiceDependences;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
@@ -154,6 +161,162 @@ public class ServiceDependencesTest {
                 moduleIds("si1p1@1"));
     }
 
+    @Test
+    public void serviceIndexFile() throws IOException {
+        File f = File.createTempFile("service-index", null);
+        f.delete();
+        try {
+            add(module("a@1").requiresService("si"));
+            add(module("sip1@1").
+                    providesService("si", "sip1.siImpl1"));
+
+            // Build
+            Assert.assertEquals(
+                    new ServiceDependences(mlib, f).getProviderModules("si"),
+                    moduleIds("sip1@1"));
+            Assert.assertTrue(f.exists());
+
+            // Map
+            Assert.assertEquals(
+                    new ServiceDependences(mlib, f).getProviderModules("si"),
+                    moduleIds("sip1@1"));
+
+            // Update
+            add(module("sip2@1").
+                    providesService("si", "sip2.siImpl1"));
+            Assert.assertEquals(
+                    new ServiceDependences(mlib, f).getProviderModules(moduleIds("a@1")),
+                    moduleIds("sip1@1", "sip2@1"));
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void serviceIndexFileUpdated() throws IOException {
+        File f = File.createTempFile("service-index", null);
+        f.delete();
+        try {
+            add(module("sip1@1").
+                    providesService("si", "sip1.siImpl1"));
+            add(module("a@1"));
+            new ServiceDependences(mlib, f).getProviderModules("si");
+
+            // Only the module info of the installed module is read
+            add(module("sip2@1").
+                    providesService("si", "sip2.siImpl1"));
+            CachingCatalog cc = new CachingCatalog(mlib);
+            Assert.assertEquals(
+                    new ServiceDependences(cc, f).getProviderModules("si"),
+                    moduleIds("sip1@1", "sip2@1"));
+            Assert.assertEquals(cc.getMissCount(), 1);
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void serviceIndexRefreshed() throws IOException {
+        add(module("sip1@1").
+                providesService("si", "sip1.siImpl1"));
+        Assert.assertEquals(sds.getProviderModules("si"), moduleIds("sip1@1"));
+
+        add(module("sip2@1").
+                providesService("si", "sip2.siImpl1"));
+        Assert.assertEquals(sds.getProviderModules("si"), moduleIds("sip1@1"));
+
+        sds.refresh();
+        Assert.assertEquals(sds.getProviderModules("si"), moduleIds("sip1@1", "sip2@1"));
+    }
+
+    @Test
+    public void serviceIndexFileModuleInfoChanged() throws IOException {
+        final File dir = Files.createTempDirectory("mock-library").toFile();
+        File f = new File(dir, "%sat-service-index");
+        File sipDir = new File(dir, "sip");
+        try {
+            mlib = located(dir);
+            add(module("a@1").requiresService("si1"));
+            add(module("sip@1").
+                    providesService("si1", "sip.si1Impl1"));
+
+            Assert.assertEquals(
+                    new ServiceDependences(mlib, f).getProviderModules("si1"),
+                    moduleIds("sip@1"));
+
+            // The same module ids, sip@1 installed again with different
+            // module info, modifying the directory of module sip
+            mlib = located(dir);
+            Assert.assertTrue(sipDir.mkdir());
+            add(module("a@1").requiresService("si1"));
+            add(module("sip@1").
+                    providesService("si2", "sip.si2Impl1"));
+
+            sds = new ServiceDependences(mlib, f);
+            Assert.assertTrue(sds.getProviderModules("si1").isEmpty());
+            Assert.assertEquals(sds.getProviderModules("si2"), moduleIds("sip@1"));
+        } finally {
+            f.delete();
+            sipDir.delete();
+            dir.delete();
+        }
+    }
+
+    // An empty library located in a directory
+    private static MockLibrary located(final File dir) {
+        return new MockLibrary() {
+            @Override
+            public URI location() {
+                return dir.toURI();
+            }
+        };
+    }
+
+    @Test
+    public void cacheEviction() throws IOException {
+        add(module("si1p1@1").
+                providesService("si1", "si1p1.si1Impl1"));
+        add(module("si2p1@1").
+                providesService("si2", "si2p1.si2Impl1"));
+
+        sds = new ServiceDependences(mlib, null, 1);
+
+        Assert.assertEquals(sds.getProviderModules("si1"), moduleIds("si1p1@1"));
+        Assert.assertEquals(sds.getProviderModules("si1"), moduleIds("si1p1@1"));
+        Assert.assertEquals(sds.getCacheHitCount(), 1);
+        Assert.assertEquals(sds.getCacheMissCount(), 1);
+
+        // Evicts si1
+        Assert.assertEquals(sds.getProviderModules("si2"), moduleIds("si2p1@1"));
+        Assert.assertEquals(sds.getProviderModules("si1"), moduleIds("si1p1@1"));
+        Assert.assertEquals(sds.getCacheHitCount(), 1);
+        Assert.assertEquals(sds.getCacheMissCount(), 3);
+    }
+
+    @Test
+    public void parallelScan() throws IOException {
+        Set<ModuleId> si1ps = new LinkedHashSet<>();
+        Set<ModuleId> si2ps = new LinkedHashSet<>();
+        for (int i = 1; i <= 32; i++) {
+            add(module("si1p" + i + "@1").
+                    providesService("si1", "si1p" + i + ".si1Impl1"));
+            si1ps.addAll(moduleIds("si1p" + i + "@1"));
+            add(module("si2p" + i + "@1").
+                    providesService("si2", "si2p" + i + ".si2Impl1"));
+            si2ps.addAll(moduleIds("si2p" + i + "@1"));
+        }
+
+        sds.setParallelism(4);
+
+        Map<String, Set<ModuleId>> providers =
+                sds.getServiceProviderModules(Arrays.asList("si2", "si1", "si3"));
+        Assert.assertEquals(new ArrayList<>(providers.keySet()), Arrays.asList("si2", "si1", "si3"));
+        Assert.assertEquals(providers.get("si1"), si1ps);
+        Assert.assertEquals(providers.get("si2"), si2ps);
+        Assert.assertTrue(providers.get("si3").isEmpty());
+        Assert.assertEquals(sds.getCacheMissCount(), 3);
+    }
+
     protected MockLibrary add(ModuleInfoBuilder mib) {
         return mlib.add(mib.build());
     }
@@ -45,6 +45,23 @@ public class ServiceResolverTest extends AbstractResolverTest {
         resolve(queryIds("x@1"), moduleIds("x@1", "b@1"));
     }
 
+    @Test
+    public void testServiceProviderInstalled() {
+        add(module("x@1").
+                requiresService("si"));
+
+        add(module("b@1").
+                providesService("si", "siImpl"));
+
+        resolve(queryIds("x@1"), moduleIds("x@1", "b@1"));
+
+        // Resolve again with the same resolver
+        add(module("c@1").
+                providesService("si", "siImpl"));
+
+        resolve(queryIds("x@1"), moduleIds("x@1", "b@1", "c@1"));
+    }
+
     @Test
     public void testTwoRootsOneServiceProvider() {
         add(module("x@1").
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jigsaw.test.sat;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import org.openjdk.jigsaw.sat.Sat4JResolver;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * View and alias resolver tests with a library located in a directory, 
+ * resolving using a snapshot of the module graph.
+ */
+public class SnapshotResolverTest extends ViewAliasResolverTest {
+
+    File dir;
+
+    @BeforeMethod
+    void located() throws IOException {
+        dir = Files.createTempDirectory("mock-library").toFile();
+        reopen();
+    }
+
+    /**
+     * Open an empty library, and a resolver, in the same directory.
+     */
+    void reopen() {
+        mlib = new MockLibrary() {
+            @Override
+            public URI location() {
+                return dir.toURI();
+            }
+        };
+        r = new Sat4JResolver(mlib);
+    }
+
+    @AfterMethod
+    void delete() {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testSnapshotRecompiled() {
+        add(module("x@1").
+                requires("y"));
+
+        add(module("y@1"));
+
+        resolve(queryIds("x@1"), moduleIds("x@1", "y@1"));
+        Assert.assertTrue(new File(dir, "%sat-module-graph").exists());
+
+        add(module("y@2"));
+
+        resolve(queryIds("x@1"), moduleIds("x@1", "y@2"));
+    }
+
+    @Test
+    public void testSnapshotRecompiledModuleInfoChanged() {
+        add(module("x@1").
+                requires("y@1"));
+
+        add(module("y@1"));
+
+        add(module("y@2"));
+
+        resolve(queryIds("x@1"), moduleIds("x@1", "y@1"));
+
+        // The same module ids, x@1 installed again with different module
+        // info, modifying the directory of module x
+        reopen();
+        Assert.assertTrue(new File(dir, "x").mkdir());
+
+        add(module("x@1").
+                requires("y"));
+
+        add(module("y@1"));
+
+        add(module("y@2"));
+
+        resolve(queryIds("x@1"), moduleIds("x@1", "y@2"));
+    }
+}